@@ -1,16 +1,23 @@
 package com.github.metagalactic2.adapter;
 
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.github.metagalactic.views.ScalableImageView;
+import com.github.metagalactic2.image_loader.ImagePipeline;
+import com.github.metagalactic2.image_loader.ImageRequest;
+import com.github.metagalactic2.metrics.ExpandableImageViewMetrics;
 import com.github.metagalactic2.views.ExpandableImageViewPagerItem;
 import com.github.metagalactic2.views.R;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import zeta.android.utils.lang.StringUtils;
 
@@ -21,17 +28,91 @@ import zeta.android.utils.lang.StringUtils;
  */
 public class ExpandableImageViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
-    private static final String CONTENT_DESCRIPTION_FORMAT = "%s %s of %s";
-    private static final String CONTENT_DESCRIPTION_WITH_IMG_DESCRIPTION_FORMAT = "%s %s %s of %s";
+    /**
+     * The only view type used by this adapter. Holders of this type may be shared between
+     * adapters through a common {@link RecyclerView.RecycledViewPool}.
+     */
+    public static final int VIEW_TYPE_IMAGE = 0;
+
+    private static final String CONTENT_DESCRIPTION_SEPARATOR = " ";
+    private static final String CONTENT_DESCRIPTION_OF = " of ";
+
+    // 64-bit FNV-1a constants used to hash items into stable ids
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final long NOT_LOADING = -1;
 
     private boolean mIsCollapsed = false;
     private Drawable mHeroImagePlaceholderDrawable;
     private Integer mItemPadding;
-    private Integer mViewWidth;
+    private int mViewWidth;
+    private int mItemHeight = ImageRequest.SIZE_UNKNOWN;
+    private Bitmap.Config mBitmapConfig = Bitmap.Config.ARGB_8888;
     private List<ExpandableImageViewPagerItem> mData;
     private String mBaseContentDescription;
 
+    /**
+     * Content descriptions are cached per position so that steady state binds don't need to build
+     * a new string. The cache is invalidated whenever the base description or the data changes.
+     */
+    private String[] mContentDescriptions = new String[0];
+    private final StringBuilder mContentDescriptionBuilder = new StringBuilder();
+
+    /**
+     * Stable ids for each position, only computed when stable ids are enabled. Invalidated whenever
+     * the data changes.
+     */
+    private long[] mItemIds;
+
+    // Pending partial changes, see dispatchPendingChanges()
+    private boolean mIsViewWidthChanged;
+    private boolean mIsScalableChanged;
+    private boolean mIsContentDescriptionChanged;
+    private boolean mIsImageRequestChanged;
+
+    // Whether images should be reloaded when their target size or configuration changes
+    private boolean mIsImageQualityUpdateEnabled;
+
     private OnImageClickedListener mListener;
+    private ImagePipeline mImagePipeline;
+    private ExpandableImageViewMetrics mMetrics;
+
+    /**
+     * Typed payloads used to rebind only the part of an item that changed. Apart from
+     * {@link #IMAGE_QUALITY} and {@link #IMAGE}, binding with these payloads never triggers a new
+     * image load.
+     */
+    public enum Payload {
+        /**
+         * The width of the items has changed
+         */
+        VIEW_WIDTH,
+
+        /**
+         * The expanded/collapsed state (and therefore whether items may be scaled) has changed
+         */
+        SCALABLE,
+
+        /**
+         * The content description of the items has changed
+         */
+        CONTENT_DESCRIPTION,
+
+        /**
+         * The target size or configuration of the images has changed. The image is reloaded at the
+         * new size while the current one stays on screen. Only dispatched when image quality
+         * updates are enabled.
+         */
+        IMAGE_QUALITY,
+
+        /**
+         * Restores the image of an item if it was released through
+         * {@link #releaseImage(RecyclerView.ViewHolder)}. Items that still have their image are
+         * left untouched.
+         */
+        IMAGE
+    }
 
     /**
      * Listener interface for receiving updates when an item has been clicked
@@ -40,6 +121,11 @@ public class ExpandableImageViewAdapter extends RecyclerView.Adapter<RecyclerVie
 
         void onImageClicked(int position);
 
+        /**
+         * Called when a view no longer needs its image: when it is recycled or dropped, when its
+         * item has no image, and from {@link #releaseImage(RecyclerView.ViewHolder)}. It may be
+         * called for views that have nothing loaded.
+         */
         void onClearImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView);
 
         void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
@@ -47,6 +133,24 @@ public class ExpandableImageViewAdapter extends RecyclerView.Adapter<RecyclerVie
                                                      @Nullable Drawable placeholder);
     }
 
+    /**
+     * Extension of {@link OnImageClickedListener} for listeners that can make use of the exact size
+     * and configuration images are displayed at. Images are then loaded through
+     * {@link #onLoadImageFromYourFavoriteImageLibrary(ScalableImageView, ImageRequest, Drawable)}
+     * instead of the URL-only variant, at the cost of an {@link ImageRequest} per load.
+     */
+    public interface OnSizedImageClickedListener extends OnImageClickedListener {
+
+        /**
+         * @param scalableImageView the view to load the image into
+         * @param request           the image to load, including the size it will be displayed at
+         * @param placeholder       an optional drawable to show while the image loads
+         */
+        void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
+                                                     ImageRequest request,
+                                                     @Nullable Drawable placeholder);
+    }
+
     public ExpandableImageViewAdapter(List<ExpandableImageViewPagerItem> imageUrls) {
         mData = imageUrls;
     }
@@ -63,11 +167,94 @@ public class ExpandableImageViewAdapter extends RecyclerView.Adapter<RecyclerVie
     }
 
     public void setCollapsed(boolean isCollapsed) {
-        mIsCollapsed = isCollapsed;
+        if (mIsCollapsed != isCollapsed) {
+            mIsCollapsed = isCollapsed;
+            mIsScalableChanged = true;
+        }
     }
 
     public void setViewWidth(int viewWidth) {
-        mViewWidth = viewWidth;
+        if (mViewWidth != viewWidth) {
+            mViewWidth = viewWidth;
+            mIsViewWidthChanged = true;
+            mIsImageRequestChanged = true;
+        }
+    }
+
+    /**
+     * When enabled, images are reloaded (without clearing the current one) whenever their target
+     * size or configuration changes, e.g. after the view is expanded or collapsed. This should only
+     * be enabled when the image loading makes use of the target size. Disabled by default.
+     *
+     * @param enabled true if images should be reloaded when their target changes
+     */
+    public void setImageQualityUpdateEnabled(boolean enabled) {
+        mIsImageQualityUpdateEnabled = enabled;
+    }
+
+    /**
+     * @param itemHeight the height (in pixels) the items are currently displayed at, used as the
+     *                   target height of image requests
+     */
+    public void setItemHeight(int itemHeight) {
+        itemHeight = Math.max(itemHeight, ImageRequest.SIZE_UNKNOWN);
+        if (mItemHeight != itemHeight) {
+            mItemHeight = itemHeight;
+            mIsImageRequestChanged = true;
+        }
+    }
+
+    /**
+     * @param bitmapConfig the configuration images should be decoded with
+     */
+    public void setBitmapConfig(Bitmap.Config bitmapConfig) {
+        if (mBitmapConfig != bitmapConfig) {
+            mBitmapConfig = bitmapConfig;
+            mIsImageRequestChanged = true;
+        }
+    }
+
+    /**
+     * Notifies the attached items of any width, scalable state or content description changes
+     * made since the last dispatch, using {@link Payload}s so that only the changed properties are
+     * rebound and no images are reloaded.
+     */
+    public void dispatchPendingChanges() {
+        int itemCount = getItemCount();
+        if (itemCount > 0) {
+            if (mIsViewWidthChanged) {
+                notifyItemRangeChanged(0, itemCount, Payload.VIEW_WIDTH);
+            }
+            if (mIsScalableChanged) {
+                notifyItemRangeChanged(0, itemCount, Payload.SCALABLE);
+            }
+            if (mIsContentDescriptionChanged) {
+                notifyItemRangeChanged(0, itemCount, Payload.CONTENT_DESCRIPTION);
+            }
+            if (mIsImageRequestChanged && mIsImageQualityUpdateEnabled) {
+                notifyItemRangeChanged(0, itemCount, Payload.IMAGE_QUALITY);
+            }
+        }
+        clearPendingChanges();
+    }
+
+    /**
+     * Drops a pending reload of the images after their target size or configuration changed, so
+     * that the new target is only used by the next loads.
+     */
+    public void clearPendingImageRequestChange() {
+        mIsImageRequestChanged = false;
+    }
+
+    /**
+     * Drops any pending partial changes. Should be called when every item is going to be fully
+     * rebound anyway, e.g. after {@link #notifyDataSetChanged()}.
+     */
+    public void clearPendingChanges() {
+        mIsViewWidthChanged = false;
+        mIsScalableChanged = false;
+        mIsContentDescriptionChanged = false;
+        mIsImageRequestChanged = false;
     }
 
     @Override
@@ -83,90 +270,452 @@ public class ExpandableImageViewAdapter extends RecyclerView.Adapter<RecyclerVie
                 ViewGroup.LayoutParams.MATCH_PARENT);
         view.setLayoutParams(params);
         view.setPadding(mItemPadding, 0, mItemPadding, 0); // Just pad the sides
+        if (mMetrics != null) {
+            mMetrics.onViewHolderCreated();
+        }
         return new ViewHolder(view);
     }
 
     @Override
-    public void onBindViewHolder(RecyclerView.ViewHolder viewHolder, final int position) {
+    public int getItemViewType(int position) {
+        return VIEW_TYPE_IMAGE;
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder viewHolder, int position) {
+        final ViewHolder holder = (ViewHolder) viewHolder;
+        final ScalableImageView imageView = holder.mImageView;
+
+        // The holder may have been created by another adapter sharing the same view pool, so make
+        // sure clicks are reported to this one
+        holder.mAdapter = this;
+        if (mMetrics != null) {
+            mMetrics.onFullBind();
+        }
+        bindViewWidth(imageView);
+        bindScalable(imageView);
+        bindContentDescription(imageView, position);
+        bindImage(holder, position);
+    }
+
+    private void bindImage(ViewHolder holder, int position) {
+        final ScalableImageView imageView = holder.mImageView;
+        holder.mIsImageReleased = false;
+
+        final ExpandableImageViewPagerItem imageItem = mData.get(position);
+        if (imageItem == null) {
+            clearImage(holder);
+            return;
+        }
+
+        if (hasStableIds()) {
+            long itemId = getItemId(position);
+            if (holder.mBoundItemId == itemId) {
+                // This holder is already showing this item's image, no need to load it again
+                return;
+            }
+            holder.mBoundItemId = itemId;
+        }
+
+        Drawable placeholder = null;
+        if (position == 0) {
+            placeholder = mHeroImagePlaceholderDrawable;
+        }
+
+        if (mMetrics != null) {
+            mMetrics.onImageLoad(imageItem.imageUrl().equals(holder.mLoadedUrl));
+            holder.mLoadStartMillis = SystemClock.uptimeMillis();
+        }
+        holder.mLoadedUrl = imageItem.imageUrl();
+
+        if (mImagePipeline != null) {
+            mImagePipeline.load(imageView, createImageRequest(imageView, imageItem), placeholder);
+        } else {
+            loadImageThroughListener(imageView, imageItem, placeholder);
+        }
+    }
+
+    private void loadImageThroughListener(ScalableImageView imageView,
+                                          ExpandableImageViewPagerItem imageItem,
+                                          @Nullable Drawable placeholder) {
+        if (mListener instanceof OnSizedImageClickedListener) {
+            ((OnSizedImageClickedListener) mListener).onLoadImageFromYourFavoriteImageLibrary(
+                    imageView, createImageRequest(imageView, imageItem), placeholder);
+        } else if (mListener != null) {
+            // Only the URL is passed on, so there is no need to allocate a request
+            mListener.onLoadImageFromYourFavoriteImageLibrary(imageView, imageItem.imageUrl(),
+                    placeholder);
+        }
+    }
+
+    private ImageRequest createImageRequest(ScalableImageView imageView,
+                                            ExpandableImageViewPagerItem imageItem) {
+        // The image is drawn inside the view's horizontal padding
+        return createImageRequest(imageItem,
+                imageView.getPaddingLeft() + imageView.getPaddingRight());
+    }
+
+    private ImageRequest createImageRequest(ExpandableImageViewPagerItem imageItem,
+                                            int horizontalPadding) {
+        int targetWidth = ImageRequest.SIZE_UNKNOWN;
+        if (mViewWidth > 0) {
+            targetWidth = Math.max(mViewWidth - horizontalPadding, ImageRequest.SIZE_UNKNOWN);
+        }
+        return ImageRequest.create(imageItem.imageUrl(), targetWidth, mItemHeight, mBitmapConfig);
+    }
+
+    /**
+     * @param position the position of an item
+     * @return the request that would currently be used to load the item's image, or null if the
+     * item has no image. The target size assumes the default item padding.
+     */
+    @Nullable
+    public ImageRequest getImageRequestForPosition(int position) {
+        ExpandableImageViewPagerItem imageItem = mData.get(position);
+        if (imageItem == null) {
+            return null;
+        }
+
+        int itemPadding = mItemPadding == null ? 0 : mItemPadding;
+        return createImageRequest(imageItem, itemPadding * 2);
+    }
+
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder viewHolder) {
+        super.onViewRecycled(viewHolder);
+        // Don't keep a bitmap alive in the pool, and cancel any load this holder was waiting for
+        clearImage((ViewHolder) viewHolder);
+    }
+
+    @Override
+    public boolean onFailedToRecycleView(RecyclerView.ViewHolder viewHolder) {
+        // The holder is dropped rather than pooled, but its image still needs to be let go of
+        clearImage((ViewHolder) viewHolder);
+        return super.onFailedToRecycleView(viewHolder);
+    }
+
+    /**
+     * Releases the image of a holder that stays attached, e.g. one that is off screen while the
+     * view is detached from its window. The image is loaded again on the next full bind or the next
+     * bind with {@link Payload#IMAGE}.
+     *
+     * @param viewHolder a holder created by this adapter
+     */
+    public void releaseImage(RecyclerView.ViewHolder viewHolder) {
+        ViewHolder holder = (ViewHolder) viewHolder;
+        clearImage(holder);
+        holder.mIsImageReleased = true;
+    }
+
+    private void clearImage(ViewHolder holder) {
+        holder.mBoundItemId = RecyclerView.NO_ID;
+        holder.mLoadStartMillis = NOT_LOADING;
+        if (mMetrics != null) {
+            mMetrics.onImageClear();
+        }
+        if (mImagePipeline != null) {
+            mImagePipeline.clear(holder.mImageView);
+        } else if (mListener != null) {
+            mListener.onClearImageFromYourFavoriteImageLibrary(holder.mImageView);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder viewHolder, int position,
+                                 List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(viewHolder, position);
+            return;
+        }
+
         final ScalableImageView imageView = (ScalableImageView) viewHolder.itemView;
-        // Update the view width
-        if (mViewWidth != null && mViewWidth > 0) {
+        // Index based iteration to avoid allocating an iterator
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (payload == Payload.VIEW_WIDTH) {
+                bindViewWidth(imageView);
+                imageView.requestLayout();
+            } else if (payload == Payload.SCALABLE) {
+                bindScalable(imageView);
+            } else if (payload == Payload.CONTENT_DESCRIPTION) {
+                bindContentDescription(imageView, position);
+            } else if (payload == Payload.IMAGE_QUALITY) {
+                bindImageQuality(imageView, position);
+            } else if (payload == Payload.IMAGE) {
+                if (((ViewHolder) viewHolder).mIsImageReleased) {
+                    bindImage((ViewHolder) viewHolder, position);
+                }
+            } else {
+                // Unknown payload, fall back to a full bind
+                onBindViewHolder(viewHolder, position);
+                return;
+            }
+        }
+
+        if (mMetrics != null) {
+            mMetrics.onPayloadBind();
+        }
+    }
+
+    private void bindViewWidth(ScalableImageView imageView) {
+        if (mViewWidth > 0) {
             // Update the view's width. The new value will get picked up in the next layout pass
             imageView.getLayoutParams().width = mViewWidth;
         }
+    }
 
+    private void bindScalable(ScalableImageView imageView) {
         // Only allow scaling in expanded state (and, as an extra precaution, only when TalkBack is
         // not currently enabled)
         imageView.setScalable(!mIsCollapsed);
 
         // Reset any scaled state
         imageView.resetScaling();
+    }
 
-        imageView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (imageView.isScaled()) {
-                    imageView.resetScaling(true);
-                }
-
-                if (mListener != null) {
-                    mListener.onImageClicked(position);
-                }
-            }
-        });
-
-        imageView.setContentDescription(getContentDescriptionForPosition(position));
-
-        final ExpandableImageViewPagerItem imageItem = mData.get(position);
+    private void bindImageQuality(ScalableImageView imageView, int position) {
+        ExpandableImageViewPagerItem imageItem = mData.get(position);
         if (imageItem == null) {
-            if (mListener != null) {
-                mListener.onClearImageFromYourFavoriteImageLibrary(imageView);
-            }
             return;
         }
 
-        Drawable placeholder = null;
-        if (position == 0) {
-            placeholder = mHeroImagePlaceholderDrawable;
+        if (mMetrics != null) {
+            mMetrics.onImageQualityReload();
         }
 
-        if (mListener != null) {
-            mListener.onLoadImageFromYourFavoriteImageLibrary(imageView,
-                    imageItem.imageUrl(),
-                    placeholder);
+        if (mImagePipeline != null) {
+            // Keep showing the current image until the new version is ready
+            mImagePipeline.reload(imageView, createImageRequest(imageView, imageItem));
+        } else {
+            // No placeholder, so that the current image is kept by the image library
+            loadImageThroughListener(imageView, imageItem, null);
         }
     }
 
+    private void bindContentDescription(ScalableImageView imageView, int position) {
+        imageView.setContentDescription(getContentDescriptionForPosition(position));
+    }
+
     @Override
     public int getItemCount() {
         return mData.size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        if (!hasStableIds()) {
+            return RecyclerView.NO_ID;
+        }
+
+        if (mItemIds == null || mItemIds.length != mData.size()) {
+            mItemIds = computeItemIds(mData);
+        }
+        return mItemIds[position];
+    }
+
+    /**
+     * Computes a stable id for each item from its image URL and optional item id. Items that hash
+     * to the same value (e.g. the same image shown twice without an item id) are told apart by the
+     * number of times that value has already been seen, so every id in the list stays unique.
+     * <p>
+     * Only the ids of such duplicates depend on their order: inserting or removing an earlier
+     * duplicate shifts the ids of the later ones, which are then rebound. Items with a unique
+     * URL and item id keep their id across any update.
+     */
+    private static long[] computeItemIds(List<ExpandableImageViewPagerItem> data) {
+        long[] itemIds = new long[data.size()];
+        Map<Long, Integer> occurrences = new HashMap<>();
+        for (int i = 0; i < itemIds.length; i++) {
+            long hash = hashItem(data.get(i));
+            Integer seen = occurrences.get(hash);
+            occurrences.put(hash, seen == null ? 1 : seen + 1);
+            if (seen != null) {
+                hash = hashLong(hash, seen);
+            }
+            // Never collide with NO_ID
+            itemIds[i] = hash == RecyclerView.NO_ID ? 0 : hash;
+        }
+        return itemIds;
+    }
+
+    private static long hashItem(@Nullable ExpandableImageViewPagerItem item) {
+        long hash = FNV_OFFSET_BASIS;
+        if (item == null) {
+            return hash;
+        }
+
+        hash = hashString(hash, item.imageUrl());
+        if (item.itemId() != null) {
+            // Separate the two values so that ("ab", "c") and ("a", "bc") don't collide
+            hash = hashLong(hash, 0);
+            hash = hashString(hash, item.itemId());
+        }
+        return hash;
+    }
+
+    private static long hashString(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hashLong(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
     private String getContentDescriptionForPosition(int position) {
+        if (mContentDescriptions.length != mData.size()) {
+            // The data has changed size since the cache was built, so none of the cached values
+            // can be trusted ("x of y" includes the total count)
+            mContentDescriptions = new String[mData.size()];
+        }
+
+        String contentDescription = mContentDescriptions[position];
+        if (contentDescription == null) {
+            contentDescription = buildContentDescriptionForPosition(position);
+            mContentDescriptions[position] = contentDescription;
+        }
+        return contentDescription;
+    }
+
+    private String buildContentDescriptionForPosition(int position) {
         ExpandableImageViewPagerItem item = mData.get(position);
 
-        if (StringUtils.isNotNullOrEmpty(item.imageContentDescription())) {
-            return String.format(CONTENT_DESCRIPTION_WITH_IMG_DESCRIPTION_FORMAT,
-                    item.imageContentDescription(), mBaseContentDescription,
-                    position + 1, mData.size());
-        } else {
-            return String.format(CONTENT_DESCRIPTION_FORMAT, mBaseContentDescription, position + 1,
-                    mData.size());
+        StringBuilder builder = mContentDescriptionBuilder;
+        builder.setLength(0);
+        if (item != null && StringUtils.isNotNullOrEmpty(item.imageContentDescription())) {
+            builder.append(item.imageContentDescription())
+                    .append(CONTENT_DESCRIPTION_SEPARATOR);
         }
+        builder.append(mBaseContentDescription)
+                .append(CONTENT_DESCRIPTION_SEPARATOR)
+                .append(position + 1)
+                .append(CONTENT_DESCRIPTION_OF)
+                .append(mData.size());
+        return builder.toString();
+    }
+
+    /**
+     * Drops any cached content descriptions and stable ids. This must be called whenever the
+     * underlying data set changes.
+     */
+    public void onDataChanged() {
+        mItemIds = null;
+        invalidateContentDescriptions();
+    }
+
+    private void invalidateContentDescriptions() {
+        mContentDescriptions = new String[mData.size()];
+        mIsContentDescriptionChanged = true;
     }
 
     public void setBaseContentDescription(String baseContentDescription) {
+        if (baseContentDescription == null ? mBaseContentDescription == null
+                : baseContentDescription.equals(mBaseContentDescription)) {
+            // Nothing changed, keep the cached descriptions
+            return;
+        }
         mBaseContentDescription = baseContentDescription;
+        invalidateContentDescriptions();
     }
 
     public void setOnImageClickedListener(OnImageClickedListener listener) {
         mListener = listener;
     }
 
-    // Just use empty view holder, as all we will need is the root item
-    private static class ViewHolder extends RecyclerView.ViewHolder {
-        ViewHolder(View itemView) {
+    /**
+     * @param imagePipeline the pipeline to load images with. When set, it is used instead of the
+     *                      load/clear callbacks of {@link OnImageClickedListener}.
+     */
+    public void setImagePipeline(@Nullable ImagePipeline imagePipeline) {
+        mImagePipeline = imagePipeline;
+    }
+
+    /**
+     * @param metrics the metrics to record binds, image loads and clears in, or null to stop
+     *                recording
+     */
+    public void setMetrics(@Nullable ExpandableImageViewMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Records that an image has been put on screen for a holder created by this adapter.
+     *
+     * @param viewHolder      the holder showing the image
+     * @param fromMemoryCache true if the image was already in the memory cache
+     */
+    public void onImageShown(RecyclerView.ViewHolder viewHolder, boolean fromMemoryCache) {
+        if (mMetrics == null) {
+            return;
+        }
+
+        ViewHolder holder = (ViewHolder) viewHolder;
+        long now = SystemClock.uptimeMillis();
+        mMetrics.onImageShown(holder.getAdapterPosition(), now, fromMemoryCache);
+        if (holder.mLoadStartMillis != NOT_LOADING) {
+            mMetrics.onImageLoadTime(now - holder.mLoadStartMillis);
+            holder.mLoadStartMillis = NOT_LOADING;
+        }
+    }
+
+    private void onItemClicked(ViewHolder viewHolder) {
+        // Resolve the position at click time, the position at bind time may be stale by now
+        int position = viewHolder.getAdapterPosition();
+        if (position == RecyclerView.NO_POSITION) {
+            // The item has been removed or the data is being changed
+            return;
+        }
+
+        ScalableImageView imageView = viewHolder.mImageView;
+        if (imageView.isScaled()) {
+            imageView.resetScaling(true);
+        }
+
+        if (mListener != null) {
+            mListener.onImageClicked(position);
+        }
+    }
+
+    // All we need is the root item, which also acts as its own click listener so that no listener
+    // needs to be allocated when binding
+    private static class ViewHolder extends RecyclerView.ViewHolder
+            implements View.OnClickListener {
+
+        private final ScalableImageView mImageView;
+
+        // The adapter this holder was last bound by
+        private ExpandableImageViewAdapter mAdapter;
+
+        // The stable id of the item whose image was last loaded into this holder
+        private long mBoundItemId = RecyclerView.NO_ID;
+
+        // Whether the image was released while the holder stayed attached
+        private boolean mIsImageReleased;
+
+        // The image URL last loaded into this holder, kept across clears to spot repeated loads
+        private String mLoadedUrl;
+
+        // When the pending image load was requested, only tracked while recording metrics
+        private long mLoadStartMillis = NOT_LOADING;
+
+        ViewHolder(ScalableImageView itemView) {
             super(itemView);
+            mImageView = itemView;
+            mImageView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            if (mAdapter != null) {
+                mAdapter.onItemClicked(this);
+            }
         }
     }
 }
@@ -0,0 +1,64 @@
+package com.github.metagalactic2.adapter;
+
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+
+import com.github.metagalactic2.views.ExpandableImageViewPagerItem;
+
+import java.util.List;
+
+/**
+ * Computes the difference between two lists of {@link ExpandableImageViewPagerItem}s. Items are
+ * considered to be the same when they share the same image URL and the same (optional)
+ * {@link ExpandableImageViewPagerItem#itemId()}, and their contents are considered to be the same
+ * when every field matches.
+ */
+public class ExpandableImageViewDiffCallback extends DiffUtil.Callback {
+
+    private final List<ExpandableImageViewPagerItem> mOldItems;
+    private final List<ExpandableImageViewPagerItem> mNewItems;
+
+    public ExpandableImageViewDiffCallback(List<ExpandableImageViewPagerItem> oldItems,
+                                           List<ExpandableImageViewPagerItem> newItems) {
+        mOldItems = oldItems;
+        mNewItems = newItems;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return isSameItem(mOldItems.get(oldItemPosition), mNewItems.get(newItemPosition));
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        ExpandableImageViewPagerItem oldItem = mOldItems.get(oldItemPosition);
+        ExpandableImageViewPagerItem newItem = mNewItems.get(newItemPosition);
+        return oldItem == null ? newItem == null : oldItem.equals(newItem);
+    }
+
+    /**
+     * @return true if both items represent the same item, i.e. they have the same image URL and
+     * the same item id. Items without an item id that share a URL can't be told apart.
+     */
+    public static boolean isSameItem(@Nullable ExpandableImageViewPagerItem oldItem,
+                                     @Nullable ExpandableImageViewPagerItem newItem) {
+        if (oldItem == null || newItem == null) {
+            return oldItem == newItem;
+        }
+
+        String oldItemId = oldItem.itemId();
+        return oldItem.imageUrl().equals(newItem.imageUrl())
+                && (oldItemId == null ? newItem.itemId() == null
+                : oldItemId.equals(newItem.itemId()));
+    }
+}
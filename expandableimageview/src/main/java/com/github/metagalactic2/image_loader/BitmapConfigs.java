@@ -0,0 +1,79 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+/**
+ * Helpers for choosing the {@link Bitmap.Config} images are decoded with.
+ */
+public final class BitmapConfigs {
+
+    // Build.VERSION_CODES.O, hardware bitmaps are not available before that
+    private static final int HARDWARE_BITMAPS_MIN_SDK = 26;
+
+    private static final String HARDWARE_CONFIG_NAME = "HARDWARE";
+
+    private static Bitmap.Config sHardwareConfig;
+    private static boolean sHardwareConfigResolved;
+
+    private BitmapConfigs() {
+        // No instances
+    }
+
+    /**
+     * @return true if hardware bitmaps are supported on this device
+     */
+    public static boolean isHardwareConfigSupported() {
+        return getHardwareConfig() != null;
+    }
+
+    /**
+     * @return the HARDWARE config if supported on this device, null otherwise
+     */
+    @Nullable
+    public static Bitmap.Config getHardwareConfig() {
+        if (!sHardwareConfigResolved) {
+            sHardwareConfig = resolveHardwareConfig();
+            sHardwareConfigResolved = true;
+        }
+        return sHardwareConfig;
+    }
+
+    /**
+     * @param config a config
+     * @return true if bitmaps with the given config are stored in graphics memory only (and can
+     * therefore neither be drawn into nor reused as a decode target)
+     */
+    public static boolean isHardwareConfig(@Nullable Bitmap.Config config) {
+        return config != null && config == getHardwareConfig();
+    }
+
+    /**
+     * @param config a config
+     * @return the number of bytes used by each pixel of a bitmap with the given config
+     */
+    public static int getBytesPerPixel(@Nullable Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    @Nullable
+    private static Bitmap.Config resolveHardwareConfig() {
+        if (Build.VERSION.SDK_INT < HARDWARE_BITMAPS_MIN_SDK) {
+            return null;
+        }
+
+        // Looked up by name as it is not part of the SDK this library compiles against
+        try {
+            return Bitmap.Config.valueOf(HARDWARE_CONFIG_NAME);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
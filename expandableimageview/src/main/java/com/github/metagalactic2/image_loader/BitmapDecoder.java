@@ -0,0 +1,94 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Decodes encoded images for an {@link ImageRequest}: the image is subsampled down towards the
+ * request's target size, decoded with the request's configuration and, when possible, decoded into
+ * a bitmap taken from a {@link BitmapPool}. {@link ImageLoader} implementations that decode images
+ * themselves can use this to benefit from the pool as well.
+ */
+public final class BitmapDecoder {
+
+    private BitmapDecoder() {
+        // No instances
+    }
+
+    /**
+     * @param data    the encoded image
+     * @param request the request the image is decoded for
+     * @param pool    an optional pool to take the decode target from
+     * @return the decoded image, or null if it could not be decoded
+     */
+    @WorkerThread
+    @Nullable
+    public static Bitmap decode(@NonNull byte[] data, @NonNull ImageRequest request,
+                                @Nullable BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = request.bitmapConfig();
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight,
+                request.targetWidth(), request.targetHeight());
+        if (pool != null && !BitmapConfigs.isHardwareConfig(request.bitmapConfig())) {
+            options.inMutable = true;
+            options.inBitmap = getReusableBitmap(options, pool);
+        }
+
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap could not be reused after all, decode into a new one
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    /**
+     * @return the largest power of two sample size that keeps the decoded image at least as large as
+     * the target size
+     */
+    @VisibleForTesting
+    static int getSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 && targetHeight <= 0) {
+            return 1;
+        }
+
+        int sampleSize = 1;
+        while ((targetWidth <= 0 || width / (sampleSize * 2) >= targetWidth)
+                && (targetHeight <= 0 || height / (sampleSize * 2) >= targetHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @Nullable
+    private static Bitmap getReusableBitmap(BitmapFactory.Options options, BitmapPool pool) {
+        int sampleSize = options.inSampleSize;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT && sampleSize != 1) {
+            // Before KitKat only unsampled images of the exact same size can be reused
+            return null;
+        }
+
+        // Most decoders round the sampled size up. If they don't, the decode falls back to a new
+        // bitmap.
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        return pool.get(width, height, options.inPreferredConfig);
+    }
+}
@@ -0,0 +1,274 @@
+package com.github.metagalactic2.image_loader;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory cache of decoded bitmaps, keyed by {@link ImageRequest} (URL, target size and
+ * configuration) and bounded by the total byte size of the bitmaps it holds.
+ * <p>
+ * Entries are reference counted: every view showing a cached bitmap holds a reference to it, so
+ * items showing the same image share a single bitmap. Only entries that are not referenced are
+ * evicted, least recently used first, as evicting a bitmap that is still on screen would not free
+ * any memory. Evicted bitmaps are handed to the {@link BitmapPool}, if any, to be reused as decode
+ * targets.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public class BitmapMemoryCache {
+
+    // By default the cache may use 1/8th of the app's memory class
+    private static final int DEFAULT_MEMORY_CLASS_DIVISOR = 8;
+
+    private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private static final String INVALID_MAX_SIZE = "The maximum size of the cache must be" +
+            " greater than 0.";
+
+    private static BitmapMemoryCache sDefaultInstance;
+
+    // Access ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<ImageRequest, Entry> mEntries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mMaxSizeBytes;
+    private long mSizeBytes;
+    private BitmapPool mBitmapPool;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    /**
+     * @param maxSizeBytes the maximum total size (in bytes) of the unreferenced bitmaps to keep
+     */
+    public BitmapMemoryCache(long maxSizeBytes) {
+        setMaxSize(maxSizeBytes);
+    }
+
+    /**
+     * @param context any context
+     * @return a cache shared by every view in the app, whose budget is a fraction of the app's
+     * memory class. Its evicted bitmaps go to a pool whose budget is a smaller fraction of it.
+     */
+    public static BitmapMemoryCache getDefault(@NonNull Context context) {
+        if (sDefaultInstance == null) {
+            sDefaultInstance = new BitmapMemoryCache(getDefaultMaxSize(context));
+            sDefaultInstance.setBitmapPool(new BitmapPool(BitmapPool.getDefaultMaxSize(context)));
+        }
+        return sDefaultInstance;
+    }
+
+    /**
+     * @param context any context
+     * @return the default budget of the cache (in bytes), a fraction of the app's memory class
+     */
+    public static long getDefaultMaxSize(@NonNull Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return (long) activityManager.getMemoryClass() * BYTES_PER_MEGABYTE
+                / DEFAULT_MEMORY_CLASS_DIVISOR;
+    }
+
+    /**
+     * @param bitmap a bitmap
+     * @return the number of bytes used by the given bitmap
+     */
+    public static int getBitmapSize(@NonNull Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // Reused bitmaps may be larger than their current dimensions require
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * @param bitmapPool an optional pool to hand evicted bitmaps to
+     */
+    public void setBitmapPool(@Nullable BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    @Nullable
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * Returns the cached bitmap for the given request and adds a reference to it. Each successful
+     * call must be balanced by a call to {@link #release(ImageRequest)}.
+     *
+     * @param request the request to look up
+     * @return the cached bitmap, or null if there is none
+     */
+    @Nullable
+    public Bitmap acquire(@NonNull ImageRequest request) {
+        Entry entry = mEntries.get(request);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+
+        mHitCount++;
+        entry.mReferenceCount++;
+        return entry.mBitmap;
+    }
+
+    /**
+     * Adds a bitmap to the cache along with a reference to it, which must be balanced by a call to
+     * {@link #release(ImageRequest)}. If the cache already holds a bitmap for the request, that one
+     * is kept and returned instead.
+     *
+     * @param request the request the bitmap was loaded for
+     * @param bitmap  the bitmap
+     * @return the bitmap now cached for the request
+     */
+    @NonNull
+    public Bitmap putAndAcquire(@NonNull ImageRequest request, @NonNull Bitmap bitmap) {
+        Entry entry = mEntries.get(request);
+        if (entry == null) {
+            entry = new Entry(bitmap);
+            mEntries.put(request, entry);
+            mSizeBytes += entry.mSize;
+        }
+        entry.mReferenceCount++;
+        trimToSize(mMaxSizeBytes);
+        return entry.mBitmap;
+    }
+
+    /**
+     * Adds a bitmap to the cache without referencing it, e.g. for an image that was prefetched but
+     * is not shown yet. If the cache already holds a bitmap for the request, that one is kept.
+     *
+     * @param request the request the bitmap was loaded for
+     * @param bitmap  the bitmap
+     */
+    public void put(@NonNull ImageRequest request, @NonNull Bitmap bitmap) {
+        if (mEntries.containsKey(request)) {
+            return;
+        }
+
+        Entry entry = new Entry(bitmap);
+        mEntries.put(request, entry);
+        mSizeBytes += entry.mSize;
+        trimToSize(mMaxSizeBytes);
+    }
+
+    /**
+     * @param request the request to look up
+     * @return true if the cache holds a bitmap for the request. This does not count as a hit or a
+     * miss and does not change the access order.
+     */
+    public boolean contains(@NonNull ImageRequest request) {
+        return mEntries.containsKey(request);
+    }
+
+    /**
+     * Drops a reference previously obtained through {@link #acquire(ImageRequest)} or
+     * {@link #putAndAcquire(ImageRequest, Bitmap)}.
+     *
+     * @param request the request the reference was obtained for
+     */
+    public void release(@NonNull ImageRequest request) {
+        Entry entry = mEntries.get(request);
+        if (entry == null || entry.mReferenceCount == 0) {
+            return;
+        }
+
+        entry.mReferenceCount--;
+        if (entry.mReferenceCount == 0) {
+            // The entry may now be evicted
+            trimToSize(mMaxSizeBytes);
+        }
+    }
+
+    /**
+     * Evicts unreferenced entries, least recently used first, until the total size is at most the
+     * given size (or only referenced entries are left).
+     *
+     * @param maxSizeBytes the size to trim to
+     */
+    public void trimToSize(long maxSizeBytes) {
+        Iterator<Map.Entry<ImageRequest, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSizeBytes > maxSizeBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.mReferenceCount > 0) {
+                // Still on screen, evicting it would not free anything
+                continue;
+            }
+
+            iterator.remove();
+            mSizeBytes -= entry.mSize;
+            mEvictionCount++;
+            if (mBitmapPool != null) {
+                // Nobody references the bitmap anymore, so it can be reused
+                mBitmapPool.put(entry.mBitmap);
+            }
+        }
+    }
+
+    /**
+     * Evicts every unreferenced entry.
+     */
+    public void evictAll() {
+        trimToSize(0);
+    }
+
+    /**
+     * @param maxSizeBytes the maximum total size (in bytes) of the bitmaps to keep
+     */
+    public void setMaxSize(long maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException(INVALID_MAX_SIZE);
+        }
+        mMaxSizeBytes = maxSizeBytes;
+        trimToSize(maxSizeBytes);
+    }
+
+    public long getMaxSize() {
+        return mMaxSizeBytes;
+    }
+
+    /**
+     * @return the total size (in bytes) of the cached bitmaps
+     */
+    public long getSize() {
+        return mSizeBytes;
+    }
+
+    public int getEntryCount() {
+        return mEntries.size();
+    }
+
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private static class Entry {
+
+        final Bitmap mBitmap;
+        final int mSize;
+        int mReferenceCount;
+
+        Entry(Bitmap bitmap) {
+            mBitmap = bitmap;
+            mSize = getBitmapSize(bitmap);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.metagalactic2.image_loader;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LongSparseArray;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of bitmaps that are no longer shown anywhere and can be reused as decode targets (see
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}), which avoids allocating a new large
+ * bitmap for every image that is loaded while paging. Bitmaps are bucketed by their size and
+ * configuration, and the oldest bitmaps are dropped once the pool exceeds its byte budget.
+ * <p>
+ * This class is safe to use from multiple threads.
+ */
+public class BitmapPool {
+
+    // By default the pool may use 1/16th of the app's memory class
+    private static final int DEFAULT_MEMORY_CLASS_DIVISOR = 16;
+
+    private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private static final String INVALID_MAX_SIZE = "The maximum size of the pool must be" +
+            " greater than 0.";
+
+    // Bitmaps by size and configuration, see getKey()
+    private final LongSparseArray<ArrayDeque<Bitmap>> mBuckets = new LongSparseArray<>();
+
+    // Every pooled bitmap, oldest first
+    private final ArrayDeque<Bitmap> mBitmaps = new ArrayDeque<>();
+
+    private long mMaxSizeBytes;
+    private long mSizeBytes;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mPutCount;
+    private long mEvictionCount;
+
+    /**
+     * @param maxSizeBytes the maximum total size (in bytes) of the pooled bitmaps
+     */
+    public BitmapPool(long maxSizeBytes) {
+        setMaxSize(maxSizeBytes);
+    }
+
+    /**
+     * @param context any context
+     * @return the default budget of the pool (in bytes), a fraction of the app's memory class
+     */
+    public static long getDefaultMaxSize(@NonNull Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return (long) activityManager.getMemoryClass() * BYTES_PER_MEGABYTE
+                / DEFAULT_MEMORY_CLASS_DIVISOR;
+    }
+
+    /**
+     * Adds a bitmap to the pool. The bitmap must not be shown or used anywhere anymore. Bitmaps
+     * that can not be reused (immutable, recycled or hardware bitmaps) are ignored.
+     *
+     * @param bitmap the bitmap to pool
+     * @return true if the bitmap was added to the pool
+     */
+    public synchronized boolean put(@NonNull Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled()
+                || BitmapConfigs.isHardwareConfig(bitmap.getConfig())) {
+            return false;
+        }
+
+        int size = BitmapMemoryCache.getBitmapSize(bitmap);
+        if (size > mMaxSizeBytes) {
+            return false;
+        }
+
+        long key = getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> bucket = mBuckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            mBuckets.put(key, bucket);
+        }
+        bucket.addLast(bitmap);
+        mBitmaps.addLast(bitmap);
+        mSizeBytes += size;
+        mPutCount++;
+
+        trimToSize(mMaxSizeBytes);
+        return true;
+    }
+
+    /**
+     * Takes a bitmap of exactly the given size and configuration out of the pool. Its pixels are
+     * cleared.
+     *
+     * @param width  the width of the bitmap
+     * @param height the height of the bitmap
+     * @param config the configuration of the bitmap
+     * @return a bitmap to reuse, or null if the pool has none that fits
+     */
+    @Nullable
+    public synchronized Bitmap get(int width, int height, @Nullable Bitmap.Config config) {
+        ArrayDeque<Bitmap> bucket = mBuckets.get(getKey(width, height, config));
+        Bitmap bitmap = bucket == null ? null : bucket.pollLast();
+        if (bitmap == null) {
+            mMissCount++;
+            return null;
+        }
+
+        mHitCount++;
+        mBitmaps.remove(bitmap);
+        mSizeBytes -= BitmapMemoryCache.getBitmapSize(bitmap);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * Drops the oldest bitmaps until the total size is at most the given size.
+     *
+     * @param maxSizeBytes the size to trim to
+     */
+    public synchronized void trimToSize(long maxSizeBytes) {
+        while (mSizeBytes > maxSizeBytes && !mBitmaps.isEmpty()) {
+            Bitmap bitmap = mBitmaps.pollFirst();
+            ArrayDeque<Bitmap> bucket = mBuckets.get(getKey(bitmap.getWidth(),
+                    bitmap.getHeight(), bitmap.getConfig()));
+            if (bucket != null) {
+                bucket.remove(bitmap);
+            }
+            mSizeBytes -= BitmapMemoryCache.getBitmapSize(bitmap);
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Drops every pooled bitmap.
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    public final synchronized void setMaxSize(long maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException(INVALID_MAX_SIZE);
+        }
+        mMaxSizeBytes = maxSizeBytes;
+        trimToSize(maxSizeBytes);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSizeBytes;
+    }
+
+    /**
+     * @return the total size (in bytes) of the pooled bitmaps
+     */
+    public synchronized long getSize() {
+        return mSizeBytes;
+    }
+
+    public synchronized int getBitmapCount() {
+        return mBitmaps.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getPutCount() {
+        return mPutCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private static long getKey(int width, int height, @Nullable Bitmap.Config config) {
+        int configKey = config == null ? 0 : config.ordinal() + 1;
+        return ((long) width << 40) | ((long) height << 16) | configKey;
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.metagalactic2.image_loader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An on-disk tier under the {@link BitmapMemoryCache}. Images are stored already downsampled to
+ * the target size of their {@link ImageRequest} (e.g. the collapsed and expanded sizes), so they
+ * can be shown again without downloading or decoding the full size image.
+ * <p>
+ * All reads and writes hit the disk and must happen off the main thread.
+ */
+public class DiskImageCache {
+
+    private static final String DEFAULT_DIRECTORY_NAME = "expandable_image_view";
+
+    // By default the cache may use up to 50MB of disk space
+    private static final long DEFAULT_MAX_SIZE_BYTES = 50L * 1024 * 1024;
+
+    private static final int JPEG_QUALITY = 90;
+
+    private static final char KEY_SEPARATOR = '|';
+
+    private final DiskLruStore mStore;
+
+    public DiskImageCache(@NonNull DiskLruStore store) {
+        mStore = store;
+    }
+
+    /**
+     * Opens a cache with the default size in the app's cache directory.
+     *
+     * @param context any context
+     * @return the cache
+     * @throws IOException if the cache directory can not be created or read
+     */
+    @WorkerThread
+    public static DiskImageCache open(@NonNull Context context) throws IOException {
+        return open(new File(context.getCacheDir(), DEFAULT_DIRECTORY_NAME),
+                DEFAULT_MAX_SIZE_BYTES);
+    }
+
+    /**
+     * @param directory    the directory to keep the cache in
+     * @param maxSizeBytes the maximum size of the cache on disk
+     * @return the cache
+     * @throws IOException if the cache directory can not be created or read
+     */
+    @WorkerThread
+    public static DiskImageCache open(@NonNull File directory, long maxSizeBytes)
+            throws IOException {
+        return new DiskImageCache(new DiskLruStore(directory, maxSizeBytes));
+    }
+
+    /**
+     * @param request the request to look up
+     * @param pool    an optional pool to take the decode target from
+     * @return the cached image decoded with the request's configuration, or null if there is none
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap get(@NonNull ImageRequest request, @Nullable BitmapPool pool) {
+        byte[] data = mStore.get(getKey(request));
+        if (data == null) {
+            return null;
+        }
+        return BitmapDecoder.decode(data, request, pool);
+    }
+
+    /**
+     * Stores the given image for the request, downsampled to fit the request's target size.
+     *
+     * @param request the request the image was loaded for
+     * @param bitmap  the image
+     */
+    @WorkerThread
+    public void put(@NonNull ImageRequest request, @NonNull Bitmap bitmap) {
+        String key = getKey(request);
+        if (mStore.contains(key)) {
+            return;
+        }
+
+        Bitmap downsampled = downsample(bitmap, request.targetWidth(), request.targetHeight());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        boolean compressed = downsampled.hasAlpha()
+                ? downsampled.compress(Bitmap.CompressFormat.PNG, 0, outputStream)
+                : downsampled.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+        if (downsampled != bitmap) {
+            downsampled.recycle();
+        }
+        if (!compressed) {
+            return;
+        }
+
+        try {
+            mStore.put(key, outputStream.toByteArray());
+        } catch (IOException e) {
+            // Not being able to cache an image is not an error
+        }
+    }
+
+    /**
+     * Persists the access order of recent reads.
+     */
+    @WorkerThread
+    public void flush() {
+        mStore.flush();
+    }
+
+    @NonNull
+    public DiskLruStore getStore() {
+        return mStore;
+    }
+
+    private static String getKey(ImageRequest request) {
+        // The configuration is not part of the key, any stored image can be decoded with any of them
+        return request.imageUrl() + KEY_SEPARATOR + request.targetWidth() + KEY_SEPARATOR
+                + request.targetHeight();
+    }
+
+    /**
+     * Scales the bitmap down (keeping its aspect ratio) so that it fits within the target size.
+     * Returns the bitmap itself if it already fits or the target size is unknown.
+     */
+    private static Bitmap downsample(Bitmap bitmap, int targetWidth, int targetHeight) {
+        if (BitmapConfigs.isHardwareConfig(bitmap.getConfig())) {
+            // Hardware bitmaps can't be drawn in software, store them as they are
+            return bitmap;
+        }
+
+        float scale = 1f;
+        if (targetWidth > 0) {
+            scale = Math.min(scale, (float) targetWidth / bitmap.getWidth());
+        }
+        if (targetHeight > 0) {
+            scale = Math.min(scale, (float) targetHeight / bitmap.getHeight());
+        }
+        if (scale >= 1f) {
+            return bitmap;
+        }
+
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+}
@@ -0,0 +1,490 @@
+package com.github.metagalactic2.image_loader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-capped key/value store of byte arrays on disk, with least recently used eviction. Values
+ * are read and written through NIO file channels. The index (keys, files, sizes and access order)
+ * is kept as an append-only journal in the store's directory so that entries survive process
+ * restarts: every write and removal appends a single line, and reads are appended along with the
+ * next write, or on {@link #flush()}. The journal is compacted once most of its lines are
+ * redundant.
+ * <p>
+ * This class has no Android dependencies and is safe to use from multiple threads.
+ */
+public class DiskLruStore {
+
+    private static final String JOURNAL_FILE_NAME = "journal";
+    private static final String JOURNAL_TEMP_FILE_NAME = "journal.tmp";
+    private static final String JOURNAL_HEADER = "DiskLruStore 2";
+    private static final String ENTRY_FILE_SUFFIX = ".bin";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String SEPARATOR = "\t";
+
+    // Journal operations
+    private static final String PUT = "PUT";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+
+    // Minimum number of redundant journal lines before the journal is compacted
+    private static final int COMPACT_THRESHOLD = 2000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String INVALID_MAX_SIZE = "The maximum size of the store must be" +
+            " greater than 0.";
+
+    private final File mDirectory;
+    private final long mMaxSizeBytes;
+
+    // Access ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Journal lines not written out yet
+    private final StringBuilder mPendingJournal = new StringBuilder();
+
+    private long mSizeBytes;
+    private long mNextFileId;
+
+    private Writer mJournalWriter;
+
+    // Journal lines that no longer describe an entry, see compactJournalIfNeeded()
+    private int mRedundantOpCount;
+
+    // Whether reads have been appended to the journal without being written out yet
+    private boolean mHasPendingReads;
+
+    /**
+     * Opens the store in the given directory, creating it if needed. Files in the directory that
+     * are not part of the persisted index are deleted.
+     *
+     * @param directory    the directory to keep the store in. It should not be used for anything
+     *                     else.
+     * @param maxSizeBytes the maximum total size (in bytes) of the stored values
+     * @throws IOException if the directory can not be created or read
+     */
+    public DiskLruStore(File directory, long maxSizeBytes) throws IOException {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException(INVALID_MAX_SIZE);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        mDirectory = directory;
+        mMaxSizeBytes = maxSizeBytes;
+
+        readJournal();
+        deleteUnknownFiles();
+        if (mJournalWriter == null) {
+            // Missing or unreadable journal
+            rebuildJournal();
+        }
+        trimToSize();
+        flushJournal();
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the stored value, or null if there is none (or it could not be read)
+     */
+    public synchronized byte[] get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            byte[] value = readFile(getEntryFile(entry));
+            appendToJournal(READ, key, null);
+            mHasPendingReads = true;
+            return value;
+        } catch (IOException e) {
+            // The file is gone or corrupted, forget about it
+            removeEntry(key);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a value, replacing any previous value for the key, then evicts least recently used
+     * entries until the store fits its maximum size.
+     *
+     * @param key   the key, which must not contain tabs or line breaks
+     * @param value the value
+     * @throws IOException if the value could not be written
+     */
+    public synchronized void put(String key, byte[] value) throws IOException {
+        if (key.contains(SEPARATOR) || key.contains("\n") || key.contains("\r")) {
+            throw new IllegalArgumentException("Invalid key : " + key);
+        }
+
+        Entry entry = new Entry(mNextFileId++, value.length);
+        File tempFile = new File(mDirectory, entry.mFileId + TEMP_FILE_SUFFIX);
+        writeFile(tempFile, value);
+        if (!tempFile.renameTo(getEntryFile(entry))) {
+            deleteFile(tempFile);
+            throw new IOException("Unable to write entry for " + key);
+        }
+
+        removeEntry(key);
+        mEntries.put(key, entry);
+        mSizeBytes += entry.mSize;
+        appendToJournal(PUT, key, entry);
+        trimToSize();
+        flushJournal();
+        compactJournalIfNeeded();
+    }
+
+    /**
+     * @param key the key to remove
+     */
+    public synchronized void remove(String key) {
+        if (removeEntry(key)) {
+            try {
+                flushJournal();
+            } catch (IOException e) {
+                // The entry's file is gone, so it is dropped when the journal is read back anyway
+            }
+        }
+    }
+
+    public synchronized boolean contains(String key) {
+        return mEntries.containsKey(key);
+    }
+
+    /**
+     * Persists the access order of recent reads.
+     */
+    public synchronized void flush() {
+        if (!mHasPendingReads) {
+            return;
+        }
+
+        try {
+            flushJournal();
+        } catch (IOException e) {
+            // Only the access order is lost
+        }
+    }
+
+    /**
+     * @return the total size (in bytes) of the stored values
+     */
+    public synchronized long getSize() {
+        return mSizeBytes;
+    }
+
+    public long getMaxSize() {
+        return mMaxSizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return mEntries.size();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSizeBytes > mMaxSizeBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iterator.next();
+            Entry entry = mapEntry.getValue();
+            iterator.remove();
+            mSizeBytes -= entry.mSize;
+            deleteFile(getEntryFile(entry));
+            appendToJournal(REMOVE, mapEntry.getKey(), null);
+        }
+    }
+
+    private boolean removeEntry(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+
+        mSizeBytes -= entry.mSize;
+        deleteFile(getEntryFile(entry));
+        appendToJournal(REMOVE, key, null);
+        return true;
+    }
+
+    private File getEntryFile(Entry entry) {
+        return new File(mDirectory, entry.mFileId + ENTRY_FILE_SUFFIX);
+    }
+
+    //----- Journal -----//
+
+    private void readJournal() {
+        File journalFile = new File(mDirectory, JOURNAL_FILE_NAME);
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        BufferedReader reader = null;
+        int opCount = 0;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile),
+                    UTF_8));
+            if (!JOURNAL_HEADER.equals(reader.readLine())) {
+                // Unknown format, start over
+                return;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length < 2) {
+                    // Incomplete line, e.g. after a crash while writing it
+                    continue;
+                }
+                opCount++;
+
+                String key = fields[1];
+                if (PUT.equals(fields[0]) && fields.length == 4) {
+                    Entry entry = new Entry(Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                    Entry previous = mEntries.put(key, entry);
+                    if (previous != null) {
+                        mSizeBytes -= previous.mSize;
+                    }
+                    mSizeBytes += entry.mSize;
+                    mNextFileId = Math.max(mNextFileId, entry.mFileId + 1);
+                } else if (REMOVE.equals(fields[0])) {
+                    Entry previous = mEntries.remove(key);
+                    if (previous != null) {
+                        mSizeBytes -= previous.mSize;
+                    }
+                } else if (READ.equals(fields[0])) {
+                    // Only updates the access order
+                    mEntries.get(key);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Keep whatever could be read, the journal is rebuilt below
+            opCount = Integer.MAX_VALUE;
+        } finally {
+            closeQuietly(reader);
+        }
+
+        dropEntriesWithoutFiles();
+        mRedundantOpCount = opCount - mEntries.size();
+        if (opCount != Integer.MAX_VALUE) {
+            try {
+                mJournalWriter = openJournalWriter(journalFile, true);
+            } catch (IOException e) {
+                // Rebuilt by the constructor
+            }
+        }
+    }
+
+    private void dropEntriesWithoutFiles() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (getEntryFile(entry).length() != entry.mSize) {
+                // Missing or incomplete file
+                iterator.remove();
+                mSizeBytes -= entry.mSize;
+            }
+        }
+    }
+
+    /**
+     * Adds a line to the journal. Lines are only written out by {@link #flushJournal()}.
+     */
+    private void appendToJournal(String op, String key, Entry entry) {
+        mPendingJournal.append(op).append(SEPARATOR).append(key);
+        if (entry != null) {
+            mPendingJournal.append(SEPARATOR).append(entry.mFileId)
+                    .append(SEPARATOR).append(entry.mSize);
+        }
+        mPendingJournal.append('\n');
+        if (READ.equals(op)) {
+            mRedundantOpCount++;
+        } else if (REMOVE.equals(op)) {
+            // The line itself and the put it cancels
+            mRedundantOpCount += 2;
+        }
+    }
+
+    private void flushJournal() throws IOException {
+        if (mPendingJournal.length() == 0) {
+            return;
+        }
+
+        // Written but not forced to disk: losing the last lines in a crash only loses entries,
+        // whose files are then deleted as unknown files on the next start
+        mJournalWriter.write(mPendingJournal.toString());
+        mJournalWriter.flush();
+        mPendingJournal.setLength(0);
+        mHasPendingReads = false;
+    }
+
+    private void compactJournalIfNeeded() throws IOException {
+        if (mRedundantOpCount >= COMPACT_THRESHOLD && mRedundantOpCount >= mEntries.size()) {
+            rebuildJournal();
+        }
+    }
+
+    /**
+     * Replaces the journal with one that only holds a line per entry
+     */
+    private void rebuildJournal() throws IOException {
+        closeQuietly(mJournalWriter);
+        mPendingJournal.setLength(0);
+
+        File tempFile = new File(mDirectory, JOURNAL_TEMP_FILE_NAME);
+        Writer writer = openJournalWriter(tempFile, false);
+        try {
+            writer.write(JOURNAL_HEADER);
+            writer.write('\n');
+            // Least recently used first, so the access order is restored when reading it back
+            StringBuilder line = new StringBuilder();
+            for (Map.Entry<String, Entry> mapEntry : mEntries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                line.setLength(0);
+                line.append(PUT).append(SEPARATOR).append(mapEntry.getKey())
+                        .append(SEPARATOR).append(entry.mFileId)
+                        .append(SEPARATOR).append(entry.mSize).append('\n');
+                writer.write(line.toString());
+            }
+        } finally {
+            writer.close();
+        }
+
+        File journalFile = new File(mDirectory, JOURNAL_FILE_NAME);
+        if (!tempFile.renameTo(journalFile)) {
+            throw new IOException("Unable to write journal");
+        }
+        mJournalWriter = openJournalWriter(journalFile, true);
+        mRedundantOpCount = 0;
+        mHasPendingReads = false;
+    }
+
+    private static Writer openJournalWriter(File file, boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append),
+                UTF_8));
+    }
+
+    private void deleteUnknownFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long[] knownFileIds = new long[mEntries.size()];
+        int i = 0;
+        for (Entry entry : mEntries.values()) {
+            knownFileIds[i++] = entry.mFileId;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            if (JOURNAL_FILE_NAME.equals(name)) {
+                continue;
+            }
+            if (!isKnownEntryFile(name, knownFileIds)) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    private static boolean isKnownEntryFile(String fileName, long[] knownFileIds) {
+        if (!fileName.endsWith(ENTRY_FILE_SUFFIX)) {
+            return false;
+        }
+
+        long fileId;
+        try {
+            fileId = Long.parseLong(fileName.substring(0,
+                    fileName.length() - ENTRY_FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        for (long knownFileId : knownFileIds) {
+            if (knownFileId == fileId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //----- File helpers -----//
+
+    private static byte[] readFile(File file) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large : " + file);
+            }
+
+            byte[] value = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(value);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of file : " + file);
+                }
+            }
+            return value;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    private static void writeFile(File file, byte[] value) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            FileChannel channel = outputStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(value);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Ignored
+        }
+    }
+
+    private static class Entry {
+
+        final long mFileId;
+        final long mSize;
+
+        Entry(long fileId, long size) {
+            mFileId = fileId;
+            mSize = size;
+        }
+    }
+}
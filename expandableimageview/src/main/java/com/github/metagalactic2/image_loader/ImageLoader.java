@@ -0,0 +1,50 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Service provider interface for plugging an image library into an
+ * {@link com.github.metagalactic2.views.ExpandableImageView}. Implementations only need to turn an
+ * {@link ImageRequest} into a {@link Bitmap}; tracking which view shows which image, cancelling
+ * loads for recycled views and sharing loads between identical requests is handled by the
+ * {@link ImagePipeline}.
+ * <p>
+ * Loaders that decode images themselves should honor the request's target size and configuration,
+ * and can use {@link BitmapDecoder} with {@link ImagePipeline#getBitmapPool()} to reuse bitmaps.
+ */
+public interface ImageLoader {
+
+    /**
+     * Starts loading the given request. The result may be delivered on any thread, and may also be
+     * delivered synchronously from within this call (e.g. for a cache hit).
+     *
+     * @param request  the image to load
+     * @param callback the callback to deliver the result to
+     * @return a handle that can be used to cancel the load
+     */
+    @NonNull
+    Request load(@NonNull ImageRequest request, @NonNull Callback callback);
+
+    /**
+     * Handle for a load that has been started
+     */
+    interface Request {
+
+        /**
+         * Cancels the load. Any result delivered after this call is ignored.
+         */
+        void cancel();
+    }
+
+    /**
+     * Receives the result of a load
+     */
+    interface Callback {
+
+        void onSuccess(@NonNull Bitmap bitmap);
+
+        void onFailure(@Nullable Exception e);
+    }
+}
@@ -0,0 +1,500 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.widget.ImageView;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads images into image views through an {@link ImageLoader}. The pipeline keeps track of which
+ * request each view is waiting for, so that:
+ * <p>
+ * - a view that is rebound or cleared never receives a stale image
+ * - a load is cancelled as soon as no view is waiting for it anymore
+ * - identical requests (same URL and target size) share a single in-flight load
+ * <p>
+ * When a {@link BitmapMemoryCache} is supplied, loaded bitmaps are cached and every view showing
+ * a cached bitmap holds a reference to it until it is cleared or shows another image. Views are
+ * only weakly referenced by the pipeline, so a view that is dropped without being cleared does not
+ * leak: its cache reference is released once it has been garbage collected. When a
+ * {@link DiskImageCache} is set, it is checked (off the main thread) before the loader is asked,
+ * and everything the loader returns is written to it.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public class ImagePipeline {
+
+    /**
+     * Listener interface for knowing when each request has finished
+     */
+    public interface OnRequestCompleteListener {
+
+        /**
+         * @param request the request that finished
+         * @param success true if the image was loaded successfully
+         */
+        void onRequestComplete(ImageRequest request, boolean success);
+    }
+
+    /**
+     * Listener interface for knowing when an image has been put on screen
+     */
+    public interface OnImageShownListener {
+
+        /**
+         * @param target          the view now showing the image
+         * @param request         the request the image was loaded for
+         * @param fromMemoryCache true if the image was already in the memory cache when it was
+         *                        requested
+         */
+        void onImageShown(ImageView target, ImageRequest request, boolean fromMemoryCache);
+    }
+
+    // Single background thread for all disk cache reads and writes
+    private static final Executor DISK_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final ImageLoader mImageLoader;
+    private final BitmapMemoryCache mMemoryCache;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Loads that are currently running, by request
+    private final Map<ImageRequest, InFlightRequest> mInFlightRequests = new HashMap<>();
+
+    // The request each view is currently showing or waiting for
+    private final Map<ImageView, ImageRequest> mTargetRequests = new WeakHashMap<>();
+
+    // The cached image each view is currently showing (and holding a cache reference to)
+    private final Map<ImageView, ShownImage> mShownImages = new WeakHashMap<>();
+
+    // Shown images whose views were garbage collected without being cleared
+    private final ReferenceQueue<ImageView> mCollectedTargets = new ReferenceQueue<>();
+
+    private OnRequestCompleteListener mListener;
+    private OnImageShownListener mImageShownListener;
+    private DiskImageCache mDiskCache;
+
+    public ImagePipeline(@NonNull ImageLoader imageLoader) {
+        this(imageLoader, null);
+    }
+
+    public ImagePipeline(@NonNull ImageLoader imageLoader,
+                         @Nullable BitmapMemoryCache memoryCache) {
+        mImageLoader = imageLoader;
+        mMemoryCache = memoryCache;
+    }
+
+    @Nullable
+    public BitmapMemoryCache getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    /**
+     * @param diskCache an optional disk cache to use under the memory cache
+     */
+    public void setDiskCache(@Nullable DiskImageCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    @Nullable
+    public DiskImageCache getDiskCache() {
+        return mDiskCache;
+    }
+
+    /**
+     * @return the pool bitmaps evicted from the memory cache go to, if any. Loaders decoding images
+     * themselves can use it through {@link BitmapDecoder}.
+     */
+    @Nullable
+    public BitmapPool getBitmapPool() {
+        return mMemoryCache == null ? null : mMemoryCache.getBitmapPool();
+    }
+
+    public void setOnRequestCompleteListener(@Nullable OnRequestCompleteListener listener) {
+        mListener = listener;
+    }
+
+    public void setOnImageShownListener(@Nullable OnImageShownListener listener) {
+        mImageShownListener = listener;
+    }
+
+    /**
+     * Loads the given request into the given view. Nothing happens if the view is already showing
+     * or waiting for an identical request.
+     *
+     * @param target      the view to show the image in
+     * @param request     the image to load
+     * @param placeholder an optional drawable to show while the image loads
+     */
+    public void load(@NonNull ImageView target, @NonNull ImageRequest request,
+                     @Nullable Drawable placeholder) {
+        load(target, request, placeholder, false);
+    }
+
+    /**
+     * Loads a different version (e.g. a different target size) of the image the given view is
+     * currently showing. The current image stays on screen until the new one is ready, so this can
+     * be used to switch image quality without any flicker.
+     *
+     * @param target  the view to show the image in
+     * @param request the new version of the image to load
+     */
+    public void reload(@NonNull ImageView target, @NonNull ImageRequest request) {
+        load(target, request, null, true);
+    }
+
+    private void load(ImageView target, ImageRequest request, @Nullable Drawable placeholder,
+                      boolean keepCurrentImage) {
+        releaseCollectedTargets();
+        if (request.equals(mTargetRequests.get(target))) {
+            // Already showing or waiting for this image
+            return;
+        }
+
+        detach(target);
+        if (!keepCurrentImage) {
+            target.setImageDrawable(placeholder);
+            releaseShownImage(target);
+        }
+        mTargetRequests.put(target, request);
+
+        Bitmap cachedBitmap = mMemoryCache == null ? null : mMemoryCache.acquire(request);
+        if (cachedBitmap != null) {
+            showImage(target, request, cachedBitmap, false);
+            if (mListener != null) {
+                mListener.onRequestComplete(request, true);
+            }
+            return;
+        }
+
+        InFlightRequest inFlightRequest = mInFlightRequests.get(request);
+        if (inFlightRequest != null) {
+            // Share the load that is already running
+            inFlightRequest.mTargets.add(target);
+            return;
+        }
+
+        inFlightRequest = new InFlightRequest(request);
+        inFlightRequest.mTargets.add(target);
+        mInFlightRequests.put(request, inFlightRequest);
+        inFlightRequest.start();
+    }
+
+    /**
+     * Starts loading the given request into the memory cache ahead of time, so that it is ready
+     * when a view asks for it. Nothing happens if the image is already cached or being loaded, or
+     * if there is no memory cache to keep the result in.
+     *
+     * @param request the image to prefetch
+     * @return true if a new load was started
+     */
+    public boolean prefetch(@NonNull ImageRequest request) {
+        if (mMemoryCache == null || mMemoryCache.contains(request)
+                || mInFlightRequests.containsKey(request)) {
+            return false;
+        }
+
+        InFlightRequest inFlightRequest = new InFlightRequest(request);
+        inFlightRequest.mIsPrefetch = true;
+        mInFlightRequests.put(request, inFlightRequest);
+        inFlightRequest.start();
+        return true;
+    }
+
+    /**
+     * Cancels a load started by {@link #prefetch(ImageRequest)}, unless a view is now waiting for
+     * it as well.
+     *
+     * @param request the prefetched image
+     */
+    public void cancelPrefetch(@NonNull ImageRequest request) {
+        InFlightRequest inFlightRequest = mInFlightRequests.get(request);
+        if (inFlightRequest == null || !inFlightRequest.mIsPrefetch) {
+            return;
+        }
+
+        inFlightRequest.mIsPrefetch = false;
+        if (inFlightRequest.mTargets.isEmpty()) {
+            mInFlightRequests.remove(request);
+            inFlightRequest.cancel();
+        }
+    }
+
+    /**
+     * Clears the image of the given view and cancels its load if no other view is waiting for it.
+     *
+     * @param target the view to clear
+     */
+    public void clear(@NonNull ImageView target) {
+        releaseCollectedTargets();
+        detach(target);
+        mTargetRequests.remove(target);
+        target.setImageDrawable(null);
+        releaseShownImage(target);
+    }
+
+    /**
+     * @param target the view to check
+     * @return the request the view is currently showing or waiting for, if any
+     */
+    @Nullable
+    public ImageRequest getRequest(@NonNull ImageView target) {
+        return mTargetRequests.get(target);
+    }
+
+    /**
+     * @return the number of loads currently running
+     */
+    public int getInFlightRequestCount() {
+        return mInFlightRequests.size();
+    }
+
+    private void detach(ImageView target) {
+        ImageRequest request = mTargetRequests.get(target);
+        if (request == null) {
+            return;
+        }
+
+        InFlightRequest inFlightRequest = mInFlightRequests.get(request);
+        if (inFlightRequest == null) {
+            // Already finished
+            return;
+        }
+
+        inFlightRequest.mTargets.remove(target);
+        if (inFlightRequest.mTargets.isEmpty() && !inFlightRequest.mIsPrefetch) {
+            // Nobody is waiting for this image anymore
+            mInFlightRequests.remove(request);
+            inFlightRequest.cancel();
+        }
+    }
+
+    private void showImage(ImageView target, ImageRequest request, Bitmap bitmap,
+                           boolean acquireReference) {
+        if (mMemoryCache != null && acquireReference) {
+            bitmap = mMemoryCache.putAndAcquire(request, bitmap);
+        }
+
+        // Only release the previous image once the view no longer draws it, as it may be handed to
+        // the bitmap pool and reused right away
+        target.setImageBitmap(bitmap);
+        releaseShownImage(target);
+        if (mMemoryCache != null) {
+            mShownImages.put(target, new ShownImage(target, request, mCollectedTargets));
+        }
+
+        if (mImageShownListener != null) {
+            // Images found in the memory cache have already been referenced when looked up
+            mImageShownListener.onImageShown(target, request, !acquireReference);
+        }
+    }
+
+    private void releaseShownImage(ImageView target) {
+        ShownImage shownImage = mShownImages.remove(target);
+        if (shownImage != null) {
+            // Released here, so it must not be released again once the view is collected
+            shownImage.clear();
+            mMemoryCache.release(shownImage.mRequest);
+        }
+    }
+
+    private void releaseCollectedTargets() {
+        ShownImage shownImage;
+        while ((shownImage = (ShownImage) mCollectedTargets.poll()) != null) {
+            mMemoryCache.release(shownImage.mRequest);
+        }
+    }
+
+    private void onRequestFinished(InFlightRequest inFlightRequest, @Nullable Bitmap bitmap,
+                                   boolean isFromLoader) {
+        if (bitmap != null && isFromLoader) {
+            // Even a stale result is worth keeping on disk
+            writeToDiskCache(inFlightRequest.mRequest, bitmap);
+        }
+
+        if (inFlightRequest.mIsCancelled
+                || mInFlightRequests.get(inFlightRequest.mRequest) != inFlightRequest) {
+            // Stale result
+            return;
+        }
+        mInFlightRequests.remove(inFlightRequest.mRequest);
+
+        if (bitmap != null && mMemoryCache != null && inFlightRequest.mIsPrefetch) {
+            // Keep the image around for the views that will ask for it
+            mMemoryCache.put(inFlightRequest.mRequest, bitmap);
+        }
+
+        List<ImageView> targets = inFlightRequest.mTargets;
+        for (int i = 0; i < targets.size(); i++) {
+            ImageView target = targets.get(i);
+            if (!inFlightRequest.mRequest.equals(mTargetRequests.get(target))) {
+                continue;
+            }
+
+            if (bitmap != null) {
+                showImage(target, inFlightRequest.mRequest, bitmap, true);
+            } else {
+                // Forget the failed request so that the next bind tries again
+                mTargetRequests.remove(target);
+            }
+        }
+
+        if (mListener != null) {
+            mListener.onRequestComplete(inFlightRequest.mRequest, bitmap != null);
+        }
+    }
+
+    private void writeToDiskCache(final ImageRequest request, Bitmap bitmap) {
+        final DiskImageCache diskCache = mDiskCache;
+        if (diskCache == null) {
+            return;
+        }
+
+        final BitmapMemoryCache memoryCache = mMemoryCache;
+        final Bitmap cachedBitmap;
+        if (memoryCache != null) {
+            // Hold a reference until the bitmap has been written, otherwise it could be evicted
+            // into the bitmap pool and reused as a decode target while it is being compressed
+            cachedBitmap = memoryCache.putAndAcquire(request, bitmap);
+        } else {
+            // Without a memory cache there is no pool the bitmap could end up in
+            cachedBitmap = bitmap;
+        }
+
+        DISK_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    diskCache.put(request, cachedBitmap);
+                } finally {
+                    if (memoryCache != null) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                memoryCache.release(request);
+                            }
+                        });
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * A cache reference held by a view, released when the view is garbage collected without having
+     * been cleared
+     */
+    private static class ShownImage extends WeakReference<ImageView> {
+
+        final ImageRequest mRequest;
+
+        ShownImage(ImageView target, ImageRequest request, ReferenceQueue<ImageView> queue) {
+            super(target, queue);
+            mRequest = request;
+        }
+    }
+
+    private class InFlightRequest implements ImageLoader.Callback {
+
+        private final ImageRequest mRequest;
+
+        // Only held while the load runs, views that are dropped detach themselves when cleared
+        private final List<ImageView> mTargets = new ArrayList<>(1);
+        private ImageLoader.Request mHandle;
+
+        // Set on the main thread, checked on the disk thread as well
+        private volatile boolean mIsCancelled;
+
+        // Whether the load was started (and is still wanted) by prefetch()
+        private boolean mIsPrefetch;
+
+        InFlightRequest(ImageRequest request) {
+            mRequest = request;
+        }
+
+        void start() {
+            final DiskImageCache diskCache = mDiskCache;
+            if (diskCache == null) {
+                startLoader();
+                return;
+            }
+
+            DISK_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mIsCancelled) {
+                        return;
+                    }
+
+                    Bitmap bitmap = diskCache.get(mRequest, getBitmapPool());
+                    if (bitmap != null) {
+                        deliver(bitmap, false);
+                        return;
+                    }
+
+                    // Not on disk either, go back to the main thread to ask the loader
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!mIsCancelled) {
+                                startLoader();
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        private void startLoader() {
+            mHandle = mImageLoader.load(mRequest, this);
+        }
+
+        void cancel() {
+            mIsCancelled = true;
+            if (mHandle != null) {
+                mHandle.cancel();
+            }
+        }
+
+        @Override
+        public void onSuccess(@NonNull Bitmap bitmap) {
+            // Written to the disk cache (if any) once back on the main thread
+            deliver(bitmap, true);
+        }
+
+        @Override
+        public void onFailure(@Nullable Exception e) {
+            deliver(null, true);
+        }
+
+        /**
+         * @param isFromLoader true if the bitmap comes from the loader (and not from the disk
+         *                     cache)
+         */
+        private void deliver(@Nullable final Bitmap bitmap, final boolean isFromLoader) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                onRequestFinished(this, bitmap, isFromLoader);
+                return;
+            }
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onRequestFinished(InFlightRequest.this, bitmap, isFromLoader);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Describes a single image to load. Two requests are considered equal (and will share a single
+ * in-flight load) when all of their fields are equal.
+ */
+@AutoValue
+public abstract class ImageRequest {
+
+    /**
+     * Used for a target dimension that is not known
+     */
+    public static final int SIZE_UNKNOWN = 0;
+
+    public abstract String imageUrl();
+
+    /**
+     * @return the width (in pixels) the image will be displayed at, or {@link #SIZE_UNKNOWN}
+     */
+    public abstract int targetWidth();
+
+    /**
+     * @return the height (in pixels) the image will be displayed at, or {@link #SIZE_UNKNOWN}
+     */
+    public abstract int targetHeight();
+
+    /**
+     * @return the configuration the image should be decoded with. Loaders should honor it, as it
+     * may have been chosen to reduce memory usage for the current state of the view.
+     */
+    public abstract Bitmap.Config bitmapConfig();
+
+    public static ImageRequest create(String imageUrl) {
+        return create(imageUrl, SIZE_UNKNOWN, SIZE_UNKNOWN);
+    }
+
+    public static ImageRequest create(String imageUrl, int targetWidth, int targetHeight) {
+        return create(imageUrl, targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    public static ImageRequest create(String imageUrl, int targetWidth, int targetHeight,
+                                      Bitmap.Config bitmapConfig) {
+        return new AutoValue_ImageRequest(imageUrl, targetWidth, targetHeight, bitmapConfig);
+    }
+}
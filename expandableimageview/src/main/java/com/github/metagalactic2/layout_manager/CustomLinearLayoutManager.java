@@ -4,12 +4,22 @@ import android.content.Context;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.DisplayMetrics;
+import android.view.View;
 
 /**
  * A LinearLayoutManager that overrides getExtraLayoutSpace to ensure that a fair amount of extra
  * layout space is provided for pre-loading data. The intended usage of this manager is for
  * ViewPager-like RecyclerView implementations that want to mimic a ViewPager's off-screen page
  * loading capabilities.
+ * <p>
+ * The extra space can be given either in screens or in items. Items are measured using the
+ * current item size, so the same number of items is preloaded regardless of how wide the items
+ * currently are. LinearLayoutManager only lays out the extra space in the direction of the last
+ * scroll (or towards the end if there has not been one), so this is always the space "ahead".
+ * <p>
+ * It also supports RecyclerView's idle time prefetching: when nested inside another scrolling
+ * list, the whole first page is prefetched before it scrolls on screen, and while scrolling the
+ * next page in the direction of travel is prefetched.
  */
 public class CustomLinearLayoutManager extends LinearLayoutManager {
 
@@ -22,7 +32,21 @@ public class CustomLinearLayoutManager extends LinearLayoutManager {
     private static final String INVALID_SCREENS = "The number of screens to eagerly load must be" +
             " greater than or equal to 0.";
 
+    private static final String INVALID_ITEMS = "The number of items to eagerly load must be" +
+            " greater than or equal to 0.";
+
+    private static final String INVALID_ITEMS_PER_PAGE = "The number of items per page must be" +
+            " greater than 0.";
+
+    private static final String INVALID_WIDTH_FRACTION = "The view width fraction must be" +
+            " greater than 0.";
+
+    // Used when no amount of items to eagerly load is set
+    private static final int ITEMS_NOT_SET = -1;
+
     private int mScreensToEagerLoad = DEFAULT_SCREENS_TO_EAGER_LOAD;
+    private int mItemsToEagerLoad = ITEMS_NOT_SET;
+    private int mPrefetchItemsPerPage = 1;
     private int mScreenHeight;
     private int mScreenWidth;
 
@@ -42,11 +66,106 @@ public class CustomLinearLayoutManager extends LinearLayoutManager {
 
     @Override
     protected int getExtraLayoutSpace(RecyclerView.State state) {
+        if (mItemsToEagerLoad != ITEMS_NOT_SET) {
+            return mItemsToEagerLoad * getItemSize();
+        }
+        return mScreensToEagerLoad * getUsableSize();
+    }
+
+    /**
+     * @return the size of the current items in the layout direction, or the size of the whole
+     * list if there are no items laid out yet
+     */
+    private int getItemSize() {
+        if (getChildCount() == 0) {
+            return getUsableSize();
+        }
+
+        View child = getChildAt(0);
         if (getOrientation() == LinearLayoutManager.VERTICAL) {
-            return mScreensToEagerLoad * mScreenHeight;
+            return getDecoratedMeasuredHeight(child);
+        } else {
+            return getDecoratedMeasuredWidth(child);
+        }
+    }
+
+    /**
+     * @return the size of the list's content area in the layout direction, or the size of the
+     * screen if the list has not been measured yet
+     */
+    private int getUsableSize() {
+        if (getOrientation() == LinearLayoutManager.VERTICAL) {
+            int height = getHeight() - getPaddingTop() - getPaddingBottom();
+            return height > 0 ? height : mScreenHeight;
+        } else {
+            int width = getWidth() - getPaddingLeft() - getPaddingRight();
+            return width > 0 ? width : mScreenWidth;
+        }
+    }
+
+    @Override
+    public void collectAdjacentPrefetchPositions(int dx, int dy, RecyclerView.State state,
+                                                 LayoutPrefetchRegistry layoutPrefetchRegistry) {
+        // The default implementation prefetches the single item adjacent to the edge in the
+        // direction of travel
+        super.collectAdjacentPrefetchPositions(dx, dy, state, layoutPrefetchRegistry);
+
+        int delta = getOrientation() == LinearLayoutManager.HORIZONTAL ? dx : dy;
+        if (delta == 0 || getChildCount() == 0 || mPrefetchItemsPerPage <= 1) {
+            return;
+        }
+
+        // Prefetch the rest of the next page as well
+        boolean towardsEnd = (delta > 0) != getReverseLayout();
+        View edgeView = getChildAt(towardsEnd ? getChildCount() - 1 : 0);
+        int edgePosition = getPosition(edgeView);
+        int itemSize;
+        int edgeDistance;
+        if (getOrientation() == LinearLayoutManager.HORIZONTAL) {
+            itemSize = getDecoratedMeasuredWidth(edgeView);
+            edgeDistance = delta > 0
+                    ? getDecoratedRight(edgeView) - (getWidth() - getPaddingRight())
+                    : getPaddingLeft() - getDecoratedLeft(edgeView);
         } else {
-            return mScreensToEagerLoad * mScreenWidth;
+            itemSize = getDecoratedMeasuredHeight(edgeView);
+            edgeDistance = delta > 0
+                    ? getDecoratedBottom(edgeView) - (getHeight() - getPaddingBottom())
+                    : getPaddingTop() - getDecoratedTop(edgeView);
+        }
+        if (itemSize <= 0) {
+            return;
+        }
+        edgeDistance = Math.max(0, edgeDistance);
+
+        int direction = towardsEnd ? 1 : -1;
+        for (int i = 2; i <= mPrefetchItemsPerPage; i++) {
+            int position = edgePosition + i * direction;
+            if (position < 0 || position >= state.getItemCount()) {
+                break;
+            }
+            layoutPrefetchRegistry.addPosition(position, edgeDistance + (i - 1) * itemSize);
+        }
+    }
+
+    /**
+     * Configures the amount of items to prefetch. The initial prefetch (used when this view is
+     * nested inside another scrolling list) covers every item that is at least partially visible
+     * on the first page, and adjacent prefetching covers a full page in the direction of travel.
+     *
+     * @param itemsPerPage      the current number of items per page
+     * @param viewWidthFraction the current fraction of the total width taken by each item
+     */
+    public void setPrefetchConfiguration(int itemsPerPage, float viewWidthFraction) {
+        if (itemsPerPage <= 0) {
+            throw new IllegalArgumentException(INVALID_ITEMS_PER_PAGE);
+        }
+        if (viewWidthFraction <= 0) {
+            throw new IllegalArgumentException(INVALID_WIDTH_FRACTION);
         }
+        mPrefetchItemsPerPage = itemsPerPage;
+
+        int visibleItems = (int) Math.ceil(1f / viewWidthFraction);
+        setInitialPrefetchItemCount(Math.max(itemsPerPage, visibleItems));
     }
 
     private void init(Context context, int numberOfScreensToEagerLoad) {
@@ -61,5 +180,30 @@ public class CustomLinearLayoutManager extends LinearLayoutManager {
             throw new IllegalArgumentException(INVALID_SCREENS);
         }
         mScreensToEagerLoad = screens;
+        mItemsToEagerLoad = ITEMS_NOT_SET;
+    }
+
+    public int getNumberOfScreensToEagerLoad() {
+        return mScreensToEagerLoad;
+    }
+
+    /**
+     * Sets the amount of extra space to lay out as a number of items of the current size. This
+     * replaces any number of screens set before.
+     *
+     * @param items the number of items to lay out ahead of the visible ones
+     */
+    public void setNumberOfItemsToEagerLoad(int items) {
+        if (items < 0) {
+            throw new IllegalArgumentException(INVALID_ITEMS);
+        }
+        mItemsToEagerLoad = items;
+    }
+
+    /**
+     * @return the number of items to eagerly load, or -1 if the extra space is given in screens
+     */
+    public int getNumberOfItemsToEagerLoad() {
+        return mItemsToEagerLoad;
     }
 }
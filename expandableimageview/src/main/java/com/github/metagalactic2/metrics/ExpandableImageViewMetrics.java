@@ -0,0 +1,254 @@
+package com.github.metagalactic2.metrics;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Counts the binds, image loads, clears and cache hits of one ExpandableImageView, and times how
+ * long images take to appear. Recording is a handful of field updates and never allocates, so the
+ * metrics are always on.
+ * <p>
+ * The hero time-to-first-image is the time between a full rebind of new data (the
+ * {@code refresh()} following {@code setImageUrls()}) and the first image shown at position 0.
+ * Image load times run from the bind that requested an image to the moment it is shown. Both are
+ * only measured for images loaded through an {@code ImageLoader}; apps loading images themselves
+ * can report shown images through {@link #onImageShown(int, long, boolean)}.
+ * <p>
+ * All methods must be called from the main thread. Use {@link #snapshot()} to keep the current
+ * values, e.g. before and after an interaction in a test.
+ */
+public class ExpandableImageViewMetrics {
+
+    private static final long NOT_STARTED = -1;
+
+    private long mViewHolderCreations;
+    private long mFullBinds;
+    private long mPayloadBinds;
+    private long mImageLoads;
+    private long mSameUrlImageLoads;
+    private long mImageQualityReloads;
+    private long mImageClears;
+    private long mImagesShown;
+    private long mMemoryCacheHits;
+
+    private final TimingHistogram mImageLoadTimes;
+    private final TimingHistogram mHeroTimesToFirstImage;
+
+    // When the current hero measurement started, in uptime milliseconds
+    private long mHeroStartMillis = NOT_STARTED;
+
+    public ExpandableImageViewMetrics() {
+        this(new TimingHistogram(), new TimingHistogram());
+    }
+
+    private ExpandableImageViewMetrics(TimingHistogram imageLoadTimes,
+                                       TimingHistogram heroTimesToFirstImage) {
+        mImageLoadTimes = imageLoadTimes;
+        mHeroTimesToFirstImage = heroTimesToFirstImage;
+    }
+
+    public void onViewHolderCreated() {
+        mViewHolderCreations++;
+    }
+
+    public void onFullBind() {
+        mFullBinds++;
+    }
+
+    public void onPayloadBind() {
+        mPayloadBinds++;
+    }
+
+    /**
+     * @param isSameUrl true if the view was last loaded with the same image URL, i.e. the load
+     *                  could have been avoided
+     */
+    public void onImageLoad(boolean isSameUrl) {
+        mImageLoads++;
+        if (isSameUrl) {
+            mSameUrlImageLoads++;
+        }
+    }
+
+    public void onImageQualityReload() {
+        mImageQualityReloads++;
+    }
+
+    public void onImageClear() {
+        mImageClears++;
+    }
+
+    /**
+     * Starts measuring the hero time-to-first-image. Restarts the measurement if the previous hero
+     * image has not been shown yet.
+     *
+     * @param uptimeMillis the current time, see {@link android.os.SystemClock#uptimeMillis()}
+     */
+    public void onHeroImageRequested(long uptimeMillis) {
+        mHeroStartMillis = uptimeMillis;
+    }
+
+    /**
+     * Stops measuring the hero time-to-first-image without recording it, e.g. when the data is
+     * cleared.
+     */
+    public void cancelHeroImage() {
+        mHeroStartMillis = NOT_STARTED;
+    }
+
+    /**
+     * @param position        the adapter position of the item the image was shown for
+     * @param uptimeMillis    the current time, see {@link android.os.SystemClock#uptimeMillis()}
+     * @param fromMemoryCache true if the image was already in the memory cache
+     */
+    public void onImageShown(int position, long uptimeMillis, boolean fromMemoryCache) {
+        mImagesShown++;
+        if (fromMemoryCache) {
+            mMemoryCacheHits++;
+        }
+
+        if (position == 0 && mHeroStartMillis != NOT_STARTED) {
+            mHeroTimesToFirstImage.record(uptimeMillis - mHeroStartMillis);
+            mHeroStartMillis = NOT_STARTED;
+        }
+    }
+
+    /**
+     * @param loadMillis the time between requesting an image and showing it, in milliseconds
+     */
+    public void onImageLoadTime(long loadMillis) {
+        mImageLoadTimes.record(loadMillis);
+    }
+
+    /**
+     * @return the number of view holders created, i.e. item views that could not be recycled
+     */
+    public long getViewHolderCreations() {
+        return mViewHolderCreations;
+    }
+
+    /**
+     * @return the number of full item binds
+     */
+    public long getFullBinds() {
+        return mFullBinds;
+    }
+
+    /**
+     * @return the number of partial item binds, which only rebind the properties that changed
+     */
+    public long getPayloadBinds() {
+        return mPayloadBinds;
+    }
+
+    /**
+     * @return the number of image loads requested by binds, not counting image quality reloads
+     */
+    public long getImageLoads() {
+        return mImageLoads;
+    }
+
+    /**
+     * @return the number of image loads for the URL the view had already been loaded with
+     */
+    public long getSameUrlImageLoads() {
+        return mSameUrlImageLoads;
+    }
+
+    /**
+     * @return the number of reloads at a different target size or configuration
+     */
+    public long getImageQualityReloads() {
+        return mImageQualityReloads;
+    }
+
+    /**
+     * @return the number of images cleared from views, e.g. when they were recycled
+     */
+    public long getImageClears() {
+        return mImageClears;
+    }
+
+    /**
+     * @return the number of images put on screen
+     */
+    public long getImagesShown() {
+        return mImagesShown;
+    }
+
+    /**
+     * @return the number of shown images that were found in the memory cache
+     */
+    public long getMemoryCacheHits() {
+        return mMemoryCacheHits;
+    }
+
+    /**
+     * @return the times between requesting images and showing them
+     */
+    @NonNull
+    public TimingHistogram getImageLoadTimes() {
+        return mImageLoadTimes;
+    }
+
+    /**
+     * @return the hero times-to-first-image
+     */
+    @NonNull
+    public TimingHistogram getHeroTimesToFirstImage() {
+        return mHeroTimesToFirstImage;
+    }
+
+    /**
+     * @return a copy of the current values, which is not updated any further
+     */
+    @NonNull
+    public ExpandableImageViewMetrics snapshot() {
+        ExpandableImageViewMetrics snapshot = new ExpandableImageViewMetrics(
+                mImageLoadTimes.copy(), mHeroTimesToFirstImage.copy());
+        snapshot.mViewHolderCreations = mViewHolderCreations;
+        snapshot.mFullBinds = mFullBinds;
+        snapshot.mPayloadBinds = mPayloadBinds;
+        snapshot.mImageLoads = mImageLoads;
+        snapshot.mSameUrlImageLoads = mSameUrlImageLoads;
+        snapshot.mImageQualityReloads = mImageQualityReloads;
+        snapshot.mImageClears = mImageClears;
+        snapshot.mImagesShown = mImagesShown;
+        snapshot.mMemoryCacheHits = mMemoryCacheHits;
+        snapshot.mHeroStartMillis = mHeroStartMillis;
+        return snapshot;
+    }
+
+    /**
+     * Resets all counters and timings. A running hero measurement keeps running.
+     */
+    public void reset() {
+        mViewHolderCreations = 0;
+        mFullBinds = 0;
+        mPayloadBinds = 0;
+        mImageLoads = 0;
+        mSameUrlImageLoads = 0;
+        mImageQualityReloads = 0;
+        mImageClears = 0;
+        mImagesShown = 0;
+        mMemoryCacheHits = 0;
+        mImageLoadTimes.reset();
+        mHeroTimesToFirstImage.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ExpandableImageViewMetrics{"
+                + "viewHolderCreations=" + mViewHolderCreations
+                + ", fullBinds=" + mFullBinds
+                + ", payloadBinds=" + mPayloadBinds
+                + ", imageLoads=" + mImageLoads
+                + ", sameUrlImageLoads=" + mSameUrlImageLoads
+                + ", imageQualityReloads=" + mImageQualityReloads
+                + ", imageClears=" + mImageClears
+                + ", imagesShown=" + mImagesShown
+                + ", memoryCacheHits=" + mMemoryCacheHits
+                + ", imageLoadTimes=" + mImageLoadTimes
+                + ", heroTimesToFirstImage=" + mHeroTimesToFirstImage
+                + "}";
+    }
+}
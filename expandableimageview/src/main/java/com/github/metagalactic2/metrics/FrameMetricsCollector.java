@@ -0,0 +1,211 @@
+package com.github.metagalactic2.metrics;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * Measures frame timings with {@link Choreographer} while an interaction (see
+ * {@link InteractionPhase}) is running, and reports them to a listener once the interaction ends.
+ * <p>
+ * Frame durations are kept in a histogram with one bucket per millisecond that is allocated up
+ * front, so measuring and reporting never allocate. When no listener is set, no frame callbacks
+ * are registered at all.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public class FrameMetricsCollector implements Choreographer.FrameCallback {
+
+    /**
+     * Listener interface for receiving the frame timings of each finished interaction
+     */
+    public interface OnFrameMetricsListener {
+
+        /**
+         * @param metrics the frame timings of the interaction that just ended. The object is reused
+         *                after this call returns.
+         */
+        void onInteractionFrameMetrics(@NonNull InteractionFrameMetrics metrics);
+    }
+
+    private static final long NANOS_PER_MILLISECOND = 1000000L;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    // Frames are considered slow once they take this many frame intervals
+    private static final float SLOW_FRAME_INTERVALS = 1.5f;
+
+    // Frames longer than this many milliseconds all end up in the last histogram bucket
+    private static final int MAX_TRACKED_FRAME_MILLISECONDS = 250;
+
+    private final int[] mFrameHistogram = new int[MAX_TRACKED_FRAME_MILLISECONDS + 1];
+    private final InteractionFrameMetrics mMetrics = new InteractionFrameMetrics();
+
+    private OnFrameMetricsListener mListener;
+    private long mSlowFrameThresholdNanos;
+
+    // The interaction currently being measured, or null
+    private InteractionPhase mPhase;
+
+    private long mFirstFrameTimeNanos;
+    private long mLastFrameTimeNanos;
+    private int mFrameCount;
+    private int mSlowFrameCount;
+    private long mWorstFrameNanos;
+    private boolean mIsFrameCallbackPosted;
+
+    public FrameMetricsCollector() {
+        setRefreshRate(DEFAULT_REFRESH_RATE);
+    }
+
+    /**
+     * @param listener the listener to report to, or null to stop measuring
+     */
+    public void setListener(@Nullable OnFrameMetricsListener listener) {
+        mListener = listener;
+        if (listener == null) {
+            cancelPhase();
+        }
+    }
+
+    /**
+     * Sets the refresh rate of the display the frames are drawn on, which decides what counts as
+     * a slow frame. Defaults to 60 frames per second.
+     *
+     * @param refreshRate the refresh rate, in frames per second
+     */
+    public void setRefreshRate(float refreshRate) {
+        if (refreshRate <= 0) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        mSlowFrameThresholdNanos = (long) (SLOW_FRAME_INTERVALS * NANOS_PER_SECOND / refreshRate);
+    }
+
+    /**
+     * @return the interaction currently being measured, or null if there is none
+     */
+    @Nullable
+    public InteractionPhase getPhase() {
+        return mPhase;
+    }
+
+    /**
+     * Starts measuring a new interaction, reporting the current one first if there is one. Does
+     * nothing when no listener is set.
+     *
+     * @param phase the kind of interaction that starts
+     */
+    public void beginPhase(@NonNull InteractionPhase phase) {
+        if (mListener == null) {
+            return;
+        }
+        if (mPhase == phase) {
+            // Still the same interaction
+            return;
+        }
+
+        endPhase();
+        mPhase = phase;
+        if (!mIsFrameCallbackPosted) {
+            mIsFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stops measuring the current interaction and reports it to the listener.
+     */
+    public void endPhase() {
+        if (mPhase == null) {
+            return;
+        }
+
+        if (mListener != null && mFrameCount > 0) {
+            mMetrics.mPhase = mPhase;
+            mMetrics.mFrameCount = mFrameCount;
+            mMetrics.mSlowFrameCount = mSlowFrameCount;
+            mMetrics.mWorstFrameNanos = mWorstFrameNanos;
+            mMetrics.mPercentile95FrameNanos = getPercentileFrameNanos(0.95f);
+            mMetrics.mDurationNanos = mLastFrameTimeNanos - mFirstFrameTimeNanos;
+            mListener.onInteractionFrameMetrics(mMetrics);
+        }
+        cancelPhase();
+    }
+
+    /**
+     * Stops measuring the current interaction without reporting it.
+     */
+    public void cancelPhase() {
+        mPhase = null;
+        mFirstFrameTimeNanos = 0;
+        mLastFrameTimeNanos = 0;
+        mFrameCount = 0;
+        mSlowFrameCount = 0;
+        mWorstFrameNanos = 0;
+        Arrays.fill(mFrameHistogram, 0);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mIsFrameCallbackPosted = false;
+        if (mPhase == null) {
+            return;
+        }
+
+        onFrame(frameTimeNanos);
+        mIsFrameCallbackPosted = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Records a frame of the current interaction.
+     *
+     * @param frameTimeNanos the time the frame started rendering, in the
+     *                       {@link System#nanoTime()} time base
+     */
+    @VisibleForTesting
+    void onFrame(long frameTimeNanos) {
+        if (mPhase == null) {
+            return;
+        }
+
+        if (mLastFrameTimeNanos == 0) {
+            // The first frame only marks the start of the interaction
+            mFirstFrameTimeNanos = frameTimeNanos;
+            mLastFrameTimeNanos = frameTimeNanos;
+            return;
+        }
+
+        long frameNanos = frameTimeNanos - mLastFrameTimeNanos;
+        mLastFrameTimeNanos = frameTimeNanos;
+        mFrameCount++;
+        if (frameNanos > mSlowFrameThresholdNanos) {
+            mSlowFrameCount++;
+        }
+        if (frameNanos > mWorstFrameNanos) {
+            mWorstFrameNanos = frameNanos;
+        }
+
+        int bucket = (int) Math.min(frameNanos / NANOS_PER_MILLISECOND,
+                MAX_TRACKED_FRAME_MILLISECONDS);
+        mFrameHistogram[bucket]++;
+    }
+
+    private long getPercentileFrameNanos(float percentile) {
+        int rank = (int) Math.ceil(percentile * mFrameCount);
+        int count = 0;
+        for (int bucket = 0; bucket < MAX_TRACKED_FRAME_MILLISECONDS; bucket++) {
+            count += mFrameHistogram[bucket];
+            if (count >= rank) {
+                // Report the upper bound of the bucket, but never more than the worst frame
+                return Math.min((bucket + 1) * NANOS_PER_MILLISECOND, mWorstFrameNanos);
+            }
+        }
+        return mWorstFrameNanos;
+    }
+}
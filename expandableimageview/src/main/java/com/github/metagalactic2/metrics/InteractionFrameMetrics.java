@@ -0,0 +1,73 @@
+package com.github.metagalactic2.metrics;
+
+/**
+ * Frame timings of a single interaction, such as one drag or one expand animation. Instances are
+ * reused by {@link FrameMetricsCollector} and are only valid for the duration of the
+ * {@link FrameMetricsCollector.OnFrameMetricsListener} callback they are passed to; copy any values
+ * that need to be kept.
+ */
+public class InteractionFrameMetrics {
+
+    InteractionPhase mPhase;
+    int mFrameCount;
+    int mSlowFrameCount;
+    long mWorstFrameNanos;
+    long mPercentile95FrameNanos;
+    long mDurationNanos;
+
+    /**
+     * @return the kind of interaction that was measured
+     */
+    public InteractionPhase getPhase() {
+        return mPhase;
+    }
+
+    /**
+     * @return the number of frames drawn during the interaction
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return the number of frames that took noticeably longer than the display's frame interval,
+     * i.e. frames where at least one vsync was missed
+     */
+    public int getSlowFrameCount() {
+        return mSlowFrameCount;
+    }
+
+    /**
+     * @return the duration of the longest frame, in nanoseconds
+     */
+    public long getWorstFrameNanos() {
+        return mWorstFrameNanos;
+    }
+
+    /**
+     * @return the 95th percentile frame duration, in nanoseconds. This is accurate to the
+     * millisecond.
+     */
+    public long getPercentile95FrameNanos() {
+        return mPercentile95FrameNanos;
+    }
+
+    /**
+     * @return the time between the first and the last frame of the interaction, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "InteractionFrameMetrics{"
+                + "phase=" + mPhase
+                + ", frameCount=" + mFrameCount
+                + ", slowFrameCount=" + mSlowFrameCount
+                + ", worstFrameNanos=" + mWorstFrameNanos
+                + ", percentile95FrameNanos=" + mPercentile95FrameNanos
+                + ", durationNanos=" + mDurationNanos
+                + "}";
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.metagalactic2.metrics;
+
+/**
+ * The kinds of interaction whose frames are measured by {@link FrameMetricsCollector}
+ */
+public enum InteractionPhase {
+    /**
+     * The user is dragging the pager
+     */
+    DRAG,
+
+    /**
+     * The pager is settling (snapping) to a page after a drag or fling
+     */
+    SETTLE,
+
+    /**
+     * The pager is animating into the expanded state
+     */
+    EXPAND,
+
+    /**
+     * The pager is animating into the collapsed state
+     */
+    COLLAPSE
+}
@@ -0,0 +1,118 @@
+package com.github.metagalactic2.metrics;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A histogram of durations in milliseconds, with exponentially growing buckets (1, 2, 4, ...
+ * milliseconds). Recording never allocates.
+ */
+public class TimingHistogram {
+
+    // Upper bounds (inclusive) of all buckets except the last, which takes everything above
+    private static final long[] BUCKET_BOUNDS =
+            {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, 4096, 8192};
+
+    private final long[] mBucketCounts = new long[BUCKET_BOUNDS.length + 1];
+    private long mCount;
+    private long mSumMillis;
+    private long mMaxMillis;
+
+    /**
+     * @param durationMillis the duration to record, in milliseconds
+     */
+    public void record(long durationMillis) {
+        durationMillis = Math.max(0, durationMillis);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && durationMillis > BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+        mBucketCounts[bucket]++;
+        mCount++;
+        mSumMillis += durationMillis;
+        mMaxMillis = Math.max(mMaxMillis, durationMillis);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the sum of all recorded durations, in milliseconds
+     */
+    public long getSumMillis() {
+        return mSumMillis;
+    }
+
+    /**
+     * @return the longest recorded duration, in milliseconds
+     */
+    public long getMaxMillis() {
+        return mMaxMillis;
+    }
+
+    /**
+     * @return the average recorded duration in milliseconds, or 0 if nothing was recorded
+     */
+    public long getMeanMillis() {
+        return mCount == 0 ? 0 : mSumMillis / mCount;
+    }
+
+    /**
+     * @param percentile the percentile to look up, between 0 and 1
+     * @return the upper bound of the bucket holding the given percentile (never more than the
+     * longest recorded duration), or 0 if nothing was recorded
+     */
+    public long getPercentileMillis(float percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile * mCount);
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKET_BOUNDS.length; bucket++) {
+            count += mBucketCounts[bucket];
+            if (count >= rank) {
+                return Math.min(BUCKET_BOUNDS[bucket], mMaxMillis);
+            }
+        }
+        return mMaxMillis;
+    }
+
+    /**
+     * @return a copy of this histogram
+     */
+    @NonNull
+    public TimingHistogram copy() {
+        TimingHistogram copy = new TimingHistogram();
+        System.arraycopy(mBucketCounts, 0, copy.mBucketCounts, 0, mBucketCounts.length);
+        copy.mCount = mCount;
+        copy.mSumMillis = mSumMillis;
+        copy.mMaxMillis = mMaxMillis;
+        return copy;
+    }
+
+    /**
+     * Forgets all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < mBucketCounts.length; i++) {
+            mBucketCounts[i] = 0;
+        }
+        mCount = 0;
+        mSumMillis = 0;
+        mMaxMillis = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TimingHistogram{"
+                + "count=" + mCount
+                + ", meanMillis=" + getMeanMillis()
+                + ", p95Millis=" + getPercentileMillis(0.95f)
+                + ", maxMillis=" + mMaxMillis
+                + "}";
+    }
+}
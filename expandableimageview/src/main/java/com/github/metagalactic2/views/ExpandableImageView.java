@@ -2,16 +2,21 @@ package com.github.metagalactic2.views;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
 import android.animation.ValueAnimator;
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
@@ -21,13 +26,30 @@ import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.ImageView;
 
 import com.github.metagalactic.views.ScalableImageView;
 import com.github.metagalactic2.adapter.ExpandableImageViewAdapter;
+import com.github.metagalactic2.adapter.ExpandableImageViewDiffCallback;
+import com.github.metagalactic2.image_loader.BitmapConfigs;
+import com.github.metagalactic2.image_loader.BitmapMemoryCache;
+import com.github.metagalactic2.image_loader.BitmapPool;
+import com.github.metagalactic2.image_loader.DiskImageCache;
+import com.github.metagalactic2.image_loader.ImageLoader;
+import com.github.metagalactic2.image_loader.ImagePipeline;
+import com.github.metagalactic2.image_loader.ImageRequest;
 import com.github.metagalactic2.layout_manager.CustomLinearLayoutManager;
+import com.github.metagalactic2.metrics.ExpandableImageViewMetrics;
+import com.github.metagalactic2.metrics.FrameMetricsCollector;
+import com.github.metagalactic2.metrics.InteractionPhase;
+import com.github.metagalactic2.paging.PagingCalculator;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A RecyclerView implementation which acts similarly to a ViewPager, but which allows for multiple
@@ -46,13 +68,58 @@ public class ExpandableImageView extends RecyclerView implements
     // Time to animate snapping-to-place paging behavior (in milliseconds)
     private static final int PAGING_ANIMATION_TIME = 500;
 
-    // Time to wait after smoother scroller stops before notifying listener (in milliseconds)
-    private static final int PAGING_LISTENER_DELAY = 100;
+    // Devices with a memory class at or below this (in megabytes) preload as little as possible
+    private static final int LOW_MEMORY_CLASS = 64;
 
-    // Number of "screens" worth of additional pages to eagerly load.
-    private static final int NUM_EAGERLY_LOADED_SCREENS = 1;
+    /**
+     * Preloads the next page ahead and keeps the previous page around behind. Devices with little
+     * memory only keep a single item on either side.
+     */
+    private static final EagerLoadPolicy DEFAULT_EAGER_LOAD_POLICY = new EagerLoadPolicy() {
+        @Override
+        public int getItemsAhead(int itemsPerPage, int memoryClass) {
+            return memoryClass <= LOW_MEMORY_CLASS ? 1 : itemsPerPage;
+        }
+
+        @Override
+        public int getItemsBehind(int itemsPerPage, int memoryClass) {
+            return memoryClass <= LOW_MEMORY_CLASS
+                    ? 1 : Math.max(itemsPerPage, DEFAULT_ITEM_VIEW_CACHE_SIZE);
+        }
+    };
+
+    // The item view cache size RecyclerView uses unless told otherwise
+    private static final int DEFAULT_ITEM_VIEW_CACHE_SIZE = 2;
+
+    // Background executor used to compute the differences between data sets. A single thread is
+    // used so that diffs are always computed in the order they were requested. It is a named
+    // daemon thread, so that it shows up in traces and never keeps the process alive.
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ExpandableImageView-diff");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
 
     private boolean mIsAnimatingExpandedState = false;
+
+    // True when the running expand/collapse animation was reversed (an odd number of times), so
+    // that it ends in the state it started from
+    private boolean mIsExpandAnimationReversed = false;
+
+    // The position the running snap selects once it has settled, or NO_POSITION if there is none
+    private int mPendingSelectedPosition = NO_POSITION;
+
+    // The part of the running snap's scroll distance that has not been scrolled yet
+    private int mSnapRemainingDx;
+
+    // Performs every snap, so that snapping doesn't allocate a new scroller each time
+    private final SnapScroller mSnapScroller = new SnapScroller();
     private boolean mIsAnimatingLeftEdge = false;
     private boolean mIsCollapsed = true;
     private boolean mAreEndPagesCentered = false;
@@ -79,17 +146,54 @@ public class ExpandableImageView extends RecyclerView implements
 
     private float mViewWidthFractionCurrent = mViewWidthFractionMin;
 
+    /**
+     * True while the expand/collapse animation positions the anchor view in onLayout. The anchor
+     * values below are only meaningful while this is set.
+     */
+    private boolean mIsAnchorViewPositioningActive = false;
+
     /**
      * Used during the expand/collapse animation as an indication of where the anchor view should
      * be positioned at that point in the animation.
      */
-    private Integer mDesiredAnchorViewLeftValue;
+    private int mDesiredAnchorViewLeftValue;
 
     /**
-     * Used during the expand/collapse animation as an indication of what the final left position of
-     * the anchor view should be when the animation completes.
+     * Used during the expand/collapse animation as an indication of where the anchor view starts
+     * and what its final left position should be when the animation completes.
      */
-    private Integer mFinalAnchorViewLeftValue;
+    private int mInitialAnchorViewLeftValue;
+    private int mFinalAnchorViewLeftValue;
+
+    /**
+     * The values the expand/collapse animation runs between, captured when it starts. Together
+     * with the anchor values above, these are all each frame of the animation needs.
+     */
+    private boolean mIsLayoutAnimationFromCollapsed;
+    private int mInitialAnimationHeight;
+    private int mFinalAnimationHeight;
+    private int mInitialAnimationPadding;
+    private int mFinalAnimationPadding;
+
+    /**
+     * Drives the expand/collapse animation in {@link ExpandAnimationMode#LAYOUT} mode. It is
+     * created once and reused for every toggle.
+     */
+    private ValueAnimator mLayoutAnimator;
+
+    /**
+     * Drives the expand/collapse animation in {@link ExpandAnimationMode#TRANSFORM} mode, moving
+     * and scaling the items through {@link #mItemTransforms}.
+     */
+    private ValueAnimator mTransformAnimator;
+    private ExpandAnimationMode mExpandAnimationMode = ExpandAnimationMode.LAYOUT;
+    private ItemTransforms mItemTransforms;
+
+    // The position of the item a transform animation is anchored at
+    private int mTransformAnchorPosition;
+
+    // True while waiting for the layout that a transform animation starts from
+    private boolean mIsTransformAnimationPending = false;
 
     /**
      * Hold the position of the "first selected item" that was saved in the saved state bundle. This
@@ -99,6 +203,18 @@ public class ExpandableImageView extends RecyclerView implements
      */
     private Integer mFirstSelectedItemSaved;
 
+    /**
+     * Incremented every time the data is replaced. Used to drop the results of any data diffs that
+     * have been computed against data that is no longer current.
+     */
+    private int mDataGeneration;
+
+    /**
+     * True when the data has been replaced wholesale (see {@link #setImageUrls(List)}) and every
+     * item needs a full rebind on the next {@link #refresh()}.
+     */
+    private boolean mIsDataSetChanged = true;
+
     /**
      * Runnable for refreshing the current state of this view and its adapter. Any listeners of the
      * current page will be notified of the new state.
@@ -114,11 +230,90 @@ public class ExpandableImageView extends RecyclerView implements
         }
     };
 
+    /**
+     * Runnable for reporting a snap that had no distance to scroll. It is posted rather than run
+     * right away, so that such a snap is reported with the same timing as one that scrolled, i.e.
+     * after snapToPosition(Float, boolean) has returned.
+     */
+    private final Runnable mSnapSettledRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mPendingSelectedPosition != NO_POSITION && getScrollState() == SCROLL_STATE_IDLE) {
+                onSnapSettled();
+            }
+        }
+    };
+
+    /**
+     * Forwards images shown by the pipeline to the adapter, which records them in the metrics
+     */
+    private final ImagePipeline.OnImageShownListener mImageShownListener =
+            new ImagePipeline.OnImageShownListener() {
+                @Override
+                public void onImageShown(ImageView target, ImageRequest request,
+                                         boolean fromMemoryCache) {
+                    if (target.getParent() != ExpandableImageView.this) {
+                        // The item has been removed from the view in the meantime
+                        return;
+                    }
+                    mAdapter.onImageShown(getChildViewHolder(target), fromMemoryCache);
+                }
+            };
+
+    /**
+     * Used by the adapter instead of this view when the listener is an
+     * {@link OnSizedImageEventListener}, so that image requests are only created when they are
+     * actually passed on
+     */
+    private final ExpandableImageViewAdapter.OnSizedImageClickedListener mSizedImageListener =
+            new ExpandableImageViewAdapter.OnSizedImageClickedListener() {
+                @Override
+                public void onImageClicked(int position) {
+                    ExpandableImageView.this.onImageClicked(position);
+                }
+
+                @Override
+                public void onClearImageFromYourFavoriteImageLibrary(
+                        ScalableImageView scalableImageView) {
+                    ExpandableImageView.this.onClearImageFromYourFavoriteImageLibrary(
+                            scalableImageView);
+                }
+
+                @Override
+                public void onLoadImageFromYourFavoriteImageLibrary(
+                        ScalableImageView scalableImageView, String imageUrl,
+                        @Nullable Drawable placeholder) {
+                    ExpandableImageView.this.onLoadImageFromYourFavoriteImageLibrary(
+                            scalableImageView, imageUrl, placeholder);
+                }
+
+                @Override
+                public void onLoadImageFromYourFavoriteImageLibrary(
+                        ScalableImageView scalableImageView, ImageRequest request,
+                        @Nullable Drawable placeholder) {
+                    if (mListener instanceof OnSizedImageEventListener) {
+                        ((OnSizedImageEventListener) mListener)
+                                .onLoadImageFromYourFavoriteImageLibrary(scalableImageView,
+                                        request, placeholder);
+                    }
+                }
+            };
+
     /**
      * The underlying configuration to use when loading the images as bitmaps
      */
     private Bitmap.Config mBitmapConfig = Bitmap.Config.ARGB_8888;
 
+    /**
+     * Decides how {@link #mBitmapConfig} is applied for the collapsed and expanded states
+     */
+    private BitmapConfigMode mBitmapConfigMode = BitmapConfigMode.FIXED;
+
+    /**
+     * Whether hardware bitmaps should be used where supported
+     */
+    private boolean mHardwareBitmapsEnabled = false;
+
     /**
      * Used during the expand/collapse animation to determine the current scroll state. This is
      * necessary for deciding how much scrolling needs to be performed to place the views in their
@@ -132,6 +327,28 @@ public class ExpandableImageView extends RecyclerView implements
     private CustomLinearLayoutManager mLayoutManager;
     private List<ExpandableImageViewPagerItem> mData = new ArrayList<>();
     private String mBaseContentDescription;
+    private ExpandableImageViewPool mSharedPool;
+    private ImagePipeline mImagePipeline;
+    private DiskImageCache mDiskImageCache;
+    private ImagePrefetchScheduler mPrefetchScheduler;
+    private FrameMetricsCollector mFrameMetricsCollector;
+    private ExpandableImageViewMetrics mMetrics;
+    private final PagingCalculator mPagingCalculator = new PagingCalculator();
+
+    /**
+     * The requested item view cache size. The actual cache is emptied while the view is detached
+     * from its window, so this is what it is restored to.
+     */
+    private int mItemViewCacheSize = DEFAULT_ITEM_VIEW_CACHE_SIZE;
+
+    // Whether the item view cache size was set by the app, rather than by the eager load policy
+    private boolean mIsItemViewCacheSizeSet = false;
+
+    private EagerLoadPolicy mEagerLoadPolicy = DEFAULT_EAGER_LOAD_POLICY;
+    private int mMemoryClass;
+
+    private MemoryDegradation mMemoryDegradation = MemoryDegradation.NONE;
+    private MemoryPressureHandler mMemoryPressureHandler;
 
     /**
      * Listener interface to knowing when an image has been clicked or when one or more images
@@ -157,13 +374,140 @@ public class ExpandableImageView extends RecyclerView implements
          */
         void onImagesSelected(final int firstPosition, final int numberOfItems);
 
+        /**
+         * Callback for when a view no longer needs its image: when it is recycled or dropped,
+         * when its item has no image, and when off-screen images are released (while this view
+         * is detached from its window or under memory pressure). It may be called for views
+         * that have nothing loaded, and the view asks for its image again through
+         * {@link #onLoadImageFromYourFavoriteImageLibrary(ScalableImageView, String, Drawable)}
+         * once it needs it.
+         *
+         * @param scalableImageView the view to clear
+         */
         void onClearImageFromYourFavoriteImageLibrary(final ScalableImageView scalableImageView);
 
+        /**
+         * Only the URL is passed here, so the target size and the bitmap configuration (see
+         * {@link ExpandableImageView#setBitmapConfig(Bitmap.Config)}) are up to the image
+         * library. Implement
+         * {@link OnSizedImageEventListener} to receive them.
+         */
         void onLoadImageFromYourFavoriteImageLibrary(final ScalableImageView scalableImageView,
                                                      final String imageUrl,
                                                      @Nullable final Drawable placeholder);
     }
 
+    /**
+     * Extension of {@link OnImageEventListener} for image libraries that can make use of the exact
+     * size (and configuration) images are displayed at. When the listener implements this
+     * interface, images are loaded through
+     * {@link #onLoadImageFromYourFavoriteImageLibrary(ScalableImageView, ImageRequest, Drawable)}
+     * instead of the URL-only variant.
+     */
+    public interface OnSizedImageEventListener extends OnImageEventListener {
+
+        /**
+         * @param scalableImageView the view to load the image into
+         * @param request           the image to load. The target size matches the size the image
+         *                          is drawn at in the current expanded/collapsed state.
+         * @param placeholder       an optional drawable to show while the image loads
+         */
+        void onLoadImageFromYourFavoriteImageLibrary(final ScalableImageView scalableImageView,
+                                                     final ImageRequest request,
+                                                     @Nullable final Drawable placeholder);
+    }
+
+    /**
+     * Modes for choosing the bitmap configuration depending on the expanded/collapsed state
+     */
+    public enum BitmapConfigMode {
+        /**
+         * Always use the configuration set with {@link #setBitmapConfig(Bitmap.Config)}
+         */
+        FIXED,
+
+        /**
+         * Use the memory saving {@link Bitmap.Config#RGB_565} while collapsed and only use the
+         * configuration set with {@link #setBitmapConfig(Bitmap.Config)} for the expanded,
+         * zoomable state. This roughly halves the memory used by collapsed images.
+         */
+        LOW_MEMORY_WHEN_COLLAPSED
+    }
+
+    /**
+     * The ways the expand/collapse transition can be animated
+     */
+    public enum ExpandAnimationMode {
+        /**
+         * The pager height, the item widths and the scroll position are changed on every frame.
+         * Images are always drawn at their real size, but every frame needs a full layout pass.
+         */
+        LAYOUT,
+
+        /**
+         * The items are moved and scaled through their transform properties on hardware layers,
+         * and the new layout is only committed around the animation. Images are stretched while
+         * the animation runs, but no frame needs a layout pass.
+         */
+        TRANSFORM
+    }
+
+    /**
+     * Decides how many items are kept ready around the visible ones, e.g. to adapt eager loading
+     * to the device's memory class. The policy is consulted whenever the number of items per page
+     * changes (see {@link #refresh()}).
+     */
+    public interface EagerLoadPolicy {
+
+        /**
+         * @param itemsPerPage the current number of items per page
+         * @param memoryClass  the memory class of the device in megabytes, see
+         *                     {@link ActivityManager#getMemoryClass()}
+         * @return the number of items to lay out ahead of the visible ones, in the direction of
+         * the last scroll
+         */
+        int getItemsAhead(int itemsPerPage, int memoryClass);
+
+        /**
+         * @param itemsPerPage the current number of items per page
+         * @param memoryClass  the memory class of the device in megabytes, see
+         *                     {@link ActivityManager#getMemoryClass()}
+         * @return the number of items that scrolled out of view to keep bound, ready for scrolling
+         * back. This is the size of the item view cache.
+         */
+        int getItemsBehind(int itemsPerPage, int memoryClass);
+    }
+
+    /**
+     * The steps taken to save memory under memory pressure. Each step includes all steps before
+     * it. The view moves through these on its own as the system reports memory pressure, see
+     * {@link #setMemoryDegradation(MemoryDegradation)}.
+     */
+    public enum MemoryDegradation {
+        /**
+         * No memory pressure, everything works as configured
+         */
+        NONE,
+
+        /**
+         * Views outside the visible area are no longer laid out ahead of time
+         */
+        NO_EAGER_LOADING,
+
+        /**
+         * The images of views that are not visible are released, the item view cache is emptied
+         * and unused bitmaps are dropped from the memory cache and bitmap pool
+         */
+        RELEASE_OFF_SCREEN_IMAGES,
+
+        /**
+         * Images are decoded with {@link Bitmap.Config#RGB_565}, regardless of the
+         * {@link BitmapConfigMode}. Images already on screen are not reloaded, the configuration
+         * only applies to the images loaded from then on.
+         */
+        LOW_MEMORY_BITMAP_CONFIG
+    }
+
     public ExpandableImageView(Context context) {
         super(context);
         init();
@@ -212,17 +556,208 @@ public class ExpandableImageView extends RecyclerView implements
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent e) {
-        // If we're currently settling due to an animation, just return true to block new dragging
-        // events from happening until its over.
-        return (getScrollState() == SCROLL_STATE_SETTLING) || super.onInterceptTouchEvent(e);
+        if (e.getActionMasked() == MotionEvent.ACTION_DOWN
+                && getScrollState() == SCROLL_STATE_SETTLING) {
+            // The user caught a snap before it settled. RecyclerView stops the scroll and starts
+            // dragging from here, and the release snaps again from wherever the drag ends, so the
+            // caught snap must not report its target as selected.
+            mPendingSelectedPosition = NO_POSITION;
+        }
+        return super.onInterceptTouchEvent(e);
+    }
+
+    /**
+     * Sets the item view cache size. Once set, the number of items kept behind by the
+     * {@link EagerLoadPolicy} is no longer used.
+     */
+    @Override
+    public void setItemViewCacheSize(int size) {
+        mItemViewCacheSize = size;
+        mIsItemViewCacheSizeSet = true;
+        updateItemViewCacheSize(true);
+        updateSharedPoolSize();
+    }
+
+    /**
+     * Sets the policy deciding how many items are kept ready ahead of and behind the visible ones.
+     *
+     * @param eagerLoadPolicy the policy to use, or null to use the default one
+     */
+    public void setEagerLoadPolicy(@Nullable EagerLoadPolicy eagerLoadPolicy) {
+        mEagerLoadPolicy = eagerLoadPolicy == null ? DEFAULT_EAGER_LOAD_POLICY : eagerLoadPolicy;
+        updateEagerLoading();
+    }
+
+    private void updateEagerLoading() {
+        if (!mIsItemViewCacheSizeSet) {
+            mItemViewCacheSize = Math.max(0,
+                    mEagerLoadPolicy.getItemsBehind(mItemsPerPageCurrent, mMemoryClass));
+            updateItemViewCacheSize(true);
+        }
+        updateSharedPoolSize();
+
+        if (!mIsAnimatingExpandedState) {
+            // Otherwise this is picked up at the end of the animation
+            mLayoutManager.setNumberOfItemsToEagerLoad(getNumberOfItemsToEagerLoad());
+        }
+    }
+
+    /**
+     * Empties the item view cache (which recycles the cached views and so releases their images)
+     * while detached or while off-screen images are released because of memory pressure.
+     */
+    private void updateItemViewCacheSize(boolean isAttached) {
+        boolean isCacheAllowed = isAttached && mMemoryDegradation.compareTo(
+                MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES) < 0;
+        super.setItemViewCacheSize(isCacheAllowed ? mItemViewCacheSize : 0);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateItemViewCacheSize(true);
+        mMemoryPressureHandler.register(getContext());
+
+        // Restore the images released in onDetachedFromWindow, but only for what is on screen.
+        // Everything else gets its image when it is next bound.
+        restoreReleasedImages(mLayoutManager.findFirstVisibleItemPosition(),
+                mLayoutManager.findLastVisibleItemPosition());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // Only hold on to the images of the selected page while off screen
+        mPrefetchScheduler.cancelAll();
+        mMemoryPressureHandler.unregister();
+        mFrameMetricsCollector.cancelPhase();
+        updateItemViewCacheSize(false);
+        int firstSelectedPosition = getFirstSelectedItem();
+        releaseImagesOutside(firstSelectedPosition,
+                firstSelectedPosition + mItemsPerPageCurrent - 1);
+
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Releases the images of all children outside the given range of positions
+     */
+    private void releaseImagesOutside(int firstPosition, int lastPosition) {
+        for (int i = 0; i < getChildCount(); i++) {
+            ViewHolder holder = getChildViewHolder(getChildAt(i));
+            int position = holder.getLayoutPosition();
+            if (position < firstPosition || position > lastPosition) {
+                mAdapter.releaseImage(holder);
+            }
+        }
+    }
+
+    /**
+     * Reloads the images released through {@link #releaseImagesOutside(int, int)} within the given
+     * range of positions
+     */
+    private void restoreReleasedImages(int firstPosition, int lastPosition) {
+        if (firstPosition != NO_POSITION && lastPosition != NO_POSITION) {
+            mAdapter.notifyItemRangeChanged(firstPosition, lastPosition - firstPosition + 1,
+                    ExpandableImageViewAdapter.Payload.IMAGE);
+        }
+    }
+
+    /**
+     * Sets the steps currently taken to save memory. This is normally driven by the system's
+     * memory trim callbacks while the view is attached, and undone step by step once the pressure
+     * has passed, but apps that track memory pressure themselves may set it directly.
+     *
+     * @param degradation the steps to take
+     */
+    public void setMemoryDegradation(@NonNull MemoryDegradation degradation) {
+        MemoryDegradation previousDegradation = mMemoryDegradation;
+        if (degradation == previousDegradation) {
+            return;
+        }
+        mMemoryDegradation = degradation;
+
+        updateEagerLoading();
+        // Also needed when the cache size was set by the app, which updateEagerLoading leaves alone
+        updateItemViewCacheSize(true);
+
+        boolean releaseImages =
+                degradation.compareTo(MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES) >= 0;
+        boolean wereImagesReleased =
+                previousDegradation.compareTo(MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES) >= 0;
+        if (releaseImages) {
+            releaseImagesOutside(mLayoutManager.findFirstVisibleItemPosition(),
+                    mLayoutManager.findLastVisibleItemPosition());
+            trimImageCaches();
+        } else if (wereImagesReleased && getChildCount() > 0) {
+            restoreReleasedImages(getChildViewHolder(getChildAt(0)).getLayoutPosition(),
+                    getChildViewHolder(getChildAt(getChildCount() - 1)).getLayoutPosition());
+        }
+
+        // Switches the bitmap configuration if needed
+        updateAdapterState();
+        if (degradation == MemoryDegradation.LOW_MEMORY_BITMAP_CONFIG) {
+            // Reloading the visible images would keep both versions of each of them in memory
+            // until the new one is ready
+            mAdapter.clearPendingImageRequestChange();
+        }
+        mAdapter.dispatchPendingChanges();
+    }
+
+    /**
+     * Restores all memory saving steps taken because of memory pressure right away
+     */
+    public void restoreFromMemoryPressure() {
+        setMemoryDegradation(MemoryDegradation.NONE);
+    }
+
+    /**
+     * @return the steps currently taken to save memory
+     */
+    @NonNull
+    public MemoryDegradation getMemoryDegradation() {
+        return mMemoryDegradation;
+    }
+
+    private int getNumberOfItemsToEagerLoad() {
+        if (mMemoryDegradation.compareTo(MemoryDegradation.NO_EAGER_LOADING) >= 0) {
+            return 0;
+        }
+        return Math.max(0, mEagerLoadPolicy.getItemsAhead(mItemsPerPageCurrent, mMemoryClass));
+    }
+
+    private void trimImageCaches() {
+        if (mImagePipeline == null) {
+            return;
+        }
+
+        // Only drops what is not currently shown
+        BitmapMemoryCache memoryCache = mImagePipeline.getMemoryCache();
+        if (memoryCache != null) {
+            memoryCache.trimToSize(0);
+        }
+        BitmapPool bitmapPool = mImagePipeline.getBitmapPool();
+        if (bitmapPool != null) {
+            bitmapPool.clear();
+        }
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         super.onLayout(changed, l, t, r, b);
 
-        if (mAnchorView == null || mDesiredAnchorViewLeftValue == null ||
-                mFinalAnchorViewLeftValue == null || mLayoutManager == null) {
+        if (mIsTransformAnimationPending) {
+            // The children are now laid out in the geometry the transforms are relative to. Apply
+            // the first frame before anything is drawn.
+            mIsTransformAnimationPending = false;
+            mFrameMetricsCollector.beginPhase(
+                    mIsCollapsed ? InteractionPhase.EXPAND : InteractionPhase.COLLAPSE);
+            mItemTransforms.start();
+            mItemTransforms.applyFraction(0f);
+            mTransformAnimator.start();
+            return;
+        }
+
+        if (!mIsAnchorViewPositioningActive || mAnchorView == null || mLayoutManager == null) {
             // No repositioning needs to occur
             return;
         }
@@ -237,14 +772,16 @@ public class ExpandableImageView extends RecyclerView implements
         // Check to see if the animation should be considered over. If so, refresh the views state
         if (!mIsAnimatingLeftEdge) {
             mIsAnimatingExpandedState = false;
-            mFinalAnchorViewLeftValue = null;
-            mDesiredAnchorViewLeftValue = null;
+            mIsAnchorViewPositioningActive = false;
             mAnchorView = null;
 
-            mIsCollapsed = !mIsCollapsed;
+            if (!mIsExpandAnimationReversed) {
+                mIsCollapsed = !mIsCollapsed;
+                mPagingCalculator.setCollapsed(mIsCollapsed);
+            }
 
-            // Turn the eager loading back on
-            mLayoutManager.setNumberOfScreensToEagerLoad(NUM_EAGERLY_LOADED_SCREENS);
+            // Turn the eager loading back on (unless disabled because of memory pressure)
+            mLayoutManager.setNumberOfItemsToEagerLoad(getNumberOfItemsToEagerLoad());
 
             // We need to call refresh() here and notify our listener of the new view state. This
             // will not work properly if called here in onLayout() but we want to do it soon after
@@ -253,6 +790,74 @@ public class ExpandableImageView extends RecyclerView implements
         }
     }
 
+    @Override
+    public void onScrollStateChanged(int state) {
+        super.onScrollStateChanged(state);
+
+        if (state == SCROLL_STATE_DRAGGING) {
+            mFrameMetricsCollector.beginPhase(InteractionPhase.DRAG);
+        } else if (state == SCROLL_STATE_SETTLING) {
+            mFrameMetricsCollector.beginPhase(InteractionPhase.SETTLE);
+        } else {
+            InteractionPhase phase = mFrameMetricsCollector.getPhase();
+            if (phase == InteractionPhase.DRAG || phase == InteractionPhase.SETTLE) {
+                mFrameMetricsCollector.endPhase();
+            }
+
+            if (mPendingSelectedPosition != NO_POSITION) {
+                onSnapSettled();
+            }
+        }
+    }
+
+    @Override
+    public void onScrolled(int dx, int dy) {
+        super.onScrolled(dx, dy);
+
+        if (mPendingSelectedPosition != NO_POSITION) {
+            mSnapRemainingDx -= dx;
+        }
+    }
+
+    /**
+     * Called once the scroll has stopped while a snap was pending. The snap's page is only
+     * reported as selected if the snap actually got there, i.e. it scrolled its full distance or
+     * ran into the end of the data on the way.
+     */
+    private void onSnapSettled() {
+        int position = mPendingSelectedPosition;
+        mPendingSelectedPosition = NO_POSITION;
+
+        if (mSnapRemainingDx != 0 && canScrollHorizontally(mSnapRemainingDx)) {
+            // The snap was cut short (e.g. by a data or layout change), so no page has been
+            // settled on
+            return;
+        }
+        notifyListenerForPosition(position);
+    }
+
+    /**
+     * Sets a listener for the frame timings of each drag, settle (snap), expand and collapse
+     * interaction, e.g. to forward them to telemetry. Frames are only measured while a listener is
+     * set.
+     *
+     * @param listener the listener, or null to stop measuring
+     */
+    public void setOnFrameMetricsListener(
+            @Nullable FrameMetricsCollector.OnFrameMetricsListener listener) {
+        mFrameMetricsCollector.setListener(listener);
+    }
+
+    /**
+     * @return the bind, image load and cache hit counters of this view, along with the image load
+     * and hero time-to-first-image timings. Always recorded; see
+     * {@link ExpandableImageViewMetrics#snapshot()} and {@link ExpandableImageViewMetrics#reset()}.
+     */
+    @NonNull
+    public ExpandableImageViewMetrics getMetrics() {
+        return mMetrics;
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         // Intercept fling events if necessary
@@ -281,55 +886,51 @@ public class ExpandableImageView extends RecyclerView implements
      * states.
      */
     public void clearData() {
+        mDataGeneration++;
         mData.clear();
+        onDataChanged();
+        mMetrics.cancelHeroImage();
         // Reset the adapter
         setAdapter(mAdapter);
     }
 
     /**
-     * When set to true, clicking on the pager items will not result in the expansion of the pager.
+     * Enables stable item ids, computed from each item's image URL and optional
+     * {@link ExpandableImageViewPagerItem#itemId()}. With stable ids, items that did not change
+     * across a data update keep their view (and its image) and are not reloaded. Disabled by
+     * default.
+     * <p>
+     * Items sharing the same image URL can only be told apart by their position unless they have
+     * distinct item ids, so inserting, removing or moving one of them changes the ids of the
+     * others. Give such items an item id to keep their ids stable.
+     * <p>
+     * Note that changing this value resets the adapter, so it is best called before any data is
+     * set.
      *
-     * @param disable true if expansion should be disabled
+     * @param hasStableIds true if stable ids should be used
      */
-    public void disableViewExpansion(boolean disable) {
-        mExpandDisabled = disable;
+    public void setHasStableIds(boolean hasStableIds) {
+        if (mAdapter.hasStableIds() == hasStableIds) {
+            return;
+        }
+
+        // Stable ids can only be toggled while the adapter has no observers
+        setAdapter(null);
+        mAdapter.setHasStableIds(hasStableIds);
+        setAdapter(mAdapter);
     }
 
     /**
-     * @param position the position of the item to check
-     * @return the position of the right edge of the view with the given position (in absolute terms
-     * of the un-scrolled RecyclerView)
+     * When set to true, clicking on the pager items will not result in the expansion of the pager.
+     *
+     * @param disable true if expansion should be disabled
      */
-    private int getAbsoluteRightEdgeForPosition(int position) {
-        return (position + 1) * getViewWidth();
+    public void disableViewExpansion(boolean disable) {
+        mExpandDisabled = disable;
     }
 
     private int getExtraLeftPaddingForPosition(int position) {
-        return getExtraLeftPaddingForPosition(position, mIsCollapsed);
-    }
-
-    private int getExtraLeftOffsetForPosition(int position, boolean isForCollapsedState) {
-        // Special case: we need to make sure we don't translate the last item too far to the left
-        // (because we are translating with offsetChildrenHorizontal and not scrollBy). In this case
-        // we should return the amount needed to right-align this item. Also, we need to make sure
-        // the right edge of the item is not actually on the first page, otherwise we'll have
-        // problems at that end instead.
-        if (isForCollapsedState && !mAreEndPagesCentered && position == getLastPosition()
-                && getAbsoluteRightEdgeForPosition(position) > mDisplayWidth) {
-            return mDisplayWidth - getViewWidthMin();
-        }
-
-        // Just use the extra padding
-        return getExtraLeftPaddingForPosition(position, isForCollapsedState);
-    }
-
-    private int getExtraLeftPaddingForPosition(int position, boolean isForCollapsedState) {
-        return isPaddingVisibleForItem(position, isForCollapsedState)
-                ? getPaddingToCenterFirstItem() : 0;
-    }
-
-    private int getFirstPagePagingOffset() {
-        return mAreEndPagesCentered ? 1 : 0;
+        return mPagingCalculator.getExtraLeftPaddingForPosition(position, mIsCollapsed);
     }
 
     /**
@@ -357,159 +958,100 @@ public class ExpandableImageView extends RecyclerView implements
         return mAdapter.getItemCount() - 1;
     }
 
-    private Animator getLayoutChangeAnimator(final int initialHeight, final int finalHeight,
-                                             final int initialPadding, final int finalPadding) {
-        final boolean isCollapsed = mIsCollapsed;
-        // Animate the height and widths of the view and its children
-        ValueAnimator animator = ValueAnimator.ofInt(initialHeight, finalHeight);
+    private ValueAnimator createLayoutAnimator() {
+        ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(HEIGHT_ANIMATION_TIME);
         animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator animation) {
-                // Update the total view height
-                int currentHeight = (Integer) animation.getAnimatedValue();
-                ViewGroup.LayoutParams params = ExpandableImageView.this.getLayoutParams();
-                params.height = currentHeight;
-
-                // Update children widths
-                float rawFraction = animation.getAnimatedFraction();
-                float fraction = rawFraction;
-                if (!isCollapsed) {
-                    // Flip the fraction when collapsing
-                    fraction = 1f - fraction;
-                }
-                setViewWidthFractionCurrent(mViewWidthFractionMin +
-                        fraction * (mViewWidthFractionMax - mViewWidthFractionMin), isCollapsed);
-
-                // Rather than calling notifyDataSetChanged, we will just change the width of the
-                // available views to avoid any unnecessary view creations
-                for (int i = 0; i < mLayoutManager.getChildCount(); i++) {
-                    mLayoutManager.getChildAt(i).getLayoutParams().width = getViewWidth();
-                }
-
-                // We need to trigger a layout pass here. If we are updating the padding then that
-                // will happen automatically, otherwise we will force the pass manually.
-                if (mAreEndPagesCentered && (initialPadding != finalPadding)) {
-                    int currentPadding = Math.round(initialPadding + rawFraction * (finalPadding -
-                            initialPadding));
-                    setPadding(currentPadding, 0, currentPadding, 0);
-                } else {
-                    requestLayout();
-                }
-            }
-        });
-
-        return animator;
-    }
-
-    private Animator getLeftEdgeAnimator(View targetView, int startValue, int endValue) {
-        mAnchorView = targetView;
-        mDesiredAnchorViewLeftValue = startValue;
-        mFinalAnchorViewLeftValue = endValue;
-        ValueAnimator animator = ValueAnimator.ofInt(startValue, endValue);
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                // This is the left edge value we should be at at this point in the animation
-                mDesiredAnchorViewLeftValue = (int) animation.getAnimatedValue();
+                applyLayoutAnimationFrame(animation.getAnimatedFraction());
             }
         });
         animator.addListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationStart(Animator animation) {
                 super.onAnimationStart(animation);
+                mIsAnimatingExpandedState = true;
                 mIsAnimatingLeftEdge = true;
+                mFrameMetricsCollector.beginPhase(mIsLayoutAnimationFromCollapsed
+                        ? InteractionPhase.EXPAND : InteractionPhase.COLLAPSE);
+
+                // Disable eager loading for now. This probably shouldn't matter much, as we really
+                // shouldn't be binding views during this animation but this is nice to have just
+                // in case.
+                mLayoutManager.setNumberOfItemsToEagerLoad(0);
             }
 
             @Override
             public void onAnimationEnd(Animator animation) {
                 super.onAnimationEnd(animation);
                 mIsAnimatingLeftEdge = false;
+                mFrameMetricsCollector.endPhase();
+
+                // We will perform any final work (such as refreshing the current view state) in
+                // onLayout; if that has not already happened, explicitly request a layout pass to
+                // ensure it is triggered.
+                if (mIsAnimatingExpandedState) {
+                    requestLayout();
+                }
             }
         });
         return animator;
     }
 
-    private int getLeftEndValueForPosition(int position) {
-        int extraOffset;
-        int relativePosition = getRelativePagingPosition(position, true);
-        if (position == 0 || position == getLastPosition() || relativePosition != 0) {
-            // If the first position is 0 or if we are not collapsing back to the beginning of the
-            // page, we should check for extra padding
-            extraOffset = getExtraLeftOffsetForPosition(position, true);
+    /**
+     * Updates the pager for the given point of the expand/collapse animation in
+     * {@link ExpandAnimationMode#LAYOUT} mode. This runs on every frame, so it must not allocate.
+     *
+     * @param fraction the (interpolated) fraction of the animation
+     */
+    @VisibleForTesting
+    void applyLayoutAnimationFrame(float fraction) {
+        // Update the total view height
+        ViewGroup.LayoutParams params = getLayoutParams();
+        params.height = (int) (mInitialAnimationHeight
+                + fraction * (mFinalAnimationHeight - mInitialAnimationHeight));
+
+        // Update children widths
+        float widthFraction = fraction;
+        if (!mIsLayoutAnimationFromCollapsed) {
+            // Flip the fraction when collapsing
+            widthFraction = 1f - widthFraction;
+        }
+        setViewWidthFractionCurrent(mViewWidthFractionMin +
+                        widthFraction * (mViewWidthFractionMax - mViewWidthFractionMin),
+                mIsLayoutAnimationFromCollapsed);
+
+        // Rather than calling notifyDataSetChanged, we will just change the width of the
+        // available views to avoid any unnecessary view creations
+        int viewWidth = getViewWidth();
+        for (int i = 0; i < mLayoutManager.getChildCount(); i++) {
+            mLayoutManager.getChildAt(i).getLayoutParams().width = viewWidth;
+        }
+
+        // This is the left edge value the anchor view should be at at this point in the animation
+        mDesiredAnchorViewLeftValue = (int) (mInitialAnchorViewLeftValue
+                + fraction * (mFinalAnchorViewLeftValue - mInitialAnchorViewLeftValue));
+
+        // We need to trigger a layout pass here. If we are updating the padding then that
+        // will happen automatically, otherwise we will force the pass manually.
+        if (mAreEndPagesCentered && (mInitialAnimationPadding != mFinalAnimationPadding)) {
+            int currentPadding = Math.round(mInitialAnimationPadding
+                    + fraction * (mFinalAnimationPadding - mInitialAnimationPadding));
+            setPadding(currentPadding, 0, currentPadding, 0);
         } else {
-            // We are going to the beginning of a new page that is not the first...we don't need to
-            // take padding into account
-            extraOffset = 0;
+            requestLayout();
         }
+    }
 
-        return Math.round(extraOffset + relativePosition * mDisplayWidth * mViewWidthFractionMin);
+    private int getLeftEndValueForPosition(int position) {
+        return mPagingCalculator.getLeftEndValueForPosition(position);
     }
 
     private int getNewTargetPosition(int firstVisiblePosition, int currentLeftOffset,
                                      Float velocityX, boolean isFling) {
-        int relativePagingPosition = getRelativePagingPosition(firstVisiblePosition);
-
-        int itemsPerPage = mItemsPerPageCurrent;
-        if (firstVisiblePosition == 0 && mAreEndPagesCentered) {
-            // If we are at the first position and it is centered, the relevant items per page here
-            // is just a single item.
-            itemsPerPage = 1;
-        }
-
-        // Given the first visible position and the relative position, decide what the current,
-        // next, and previous "pages" should be. Note that for small scrolling movements toward the
-        // left of the screen, the "current" position will be based on the views seen before the
-        // scroll, while for scrolling movements toward the right of the screen the "current"
-        // position will actually be based on those sets of views that were previously off to the
-        // left. This change is due to how the first visible position changes when scrolling.
-        int currentPagePosition = firstVisiblePosition - relativePagingPosition;
-        int nextPagePosition = currentPagePosition + itemsPerPage;
-        int previousPagePosition = currentPagePosition - itemsPerPage;
-
-        // If flinging, always snap to the next page/set of pages in that direction. Otherwise, base
-        // the snapping behavior on the crossing of a threshold.
-        int targetPosition;
-        if (isFling) {
-            // We define positive values for "sign" as those that will increase the page position
-            float sign = -Math.signum(velocityX);
-            if (sign > 0) {
-                // Flinging toward the left, so show more items on the next page to the right
-                targetPosition = nextPagePosition;
-            } else {
-                // Flinging toward the right, so the "current" page here is actually what is
-                // currently on the left, so show that.
-                targetPosition = currentPagePosition;
-            }
-        } else {
-            // The threshold for snapping while scrolling will be based on half the current individual
-            // view size.
-            int snapThreshold = getViewWidth() / 2;
-            if (currentLeftOffset < 0) {
-                // Item is (partially) off the screen to the left. This is almost always the case.
-                // Note that when scrolling the the right, the first visible item is actually from
-                // a previous set of pages, and while scrolling to the left it is the "current" set
-                if (Math.abs(currentLeftOffset) > snapThreshold) {
-                    targetPosition = nextPagePosition;
-                } else {
-                    targetPosition = currentPagePosition;
-                }
-            } else {
-                // Item is on the screen off to the right
-                if (Math.abs(currentLeftOffset) > snapThreshold) {
-                    targetPosition = previousPagePosition;
-                } else {
-                    targetPosition = currentPagePosition;
-                }
-            }
-        }
-
-        // If the target position lies outside of the bounds of the current set of items, fix it to
-        // a valid endpoint
-        if (targetPosition < 0) {
-            targetPosition = 0;
-        } else if (targetPosition > getLastPosition()) {
-            targetPosition = getLastPosition();
-        }
+        int targetPosition = mPagingCalculator.getNewTargetPosition(firstVisiblePosition,
+                currentLeftOffset, velocityX == null ? 0f : velocityX, isFling);
 
         if (!isValidPagingPosition(targetPosition)) {
             // Note that these warnings should not be seen with proper usage
@@ -526,45 +1068,7 @@ public class ExpandableImageView extends RecyclerView implements
      * the screen
      */
     private int getPaddingToCenterFirstItem() {
-        float halfViewWidth = (getViewWidthMin() / 2f);
-        float numHalfViewWidthsToCenter = (mDisplayWidth / halfViewWidth) / 2;
-        return Math.round((numHalfViewWidthsToCenter - 1) * halfViewWidth);
-    }
-
-    /**
-     * Given an absolute position in the data set, return the relative position within the item's
-     * "page" for the current expanded/collapsed state.
-     *
-     * @param position the absolute position of an item
-     * @return the item's relative position in its "page" of data.
-     */
-    private int getRelativePagingPosition(int position) {
-        return getRelativePagingPosition(position, mIsCollapsed);
-    }
-
-    /**
-     * Given an absolute position in the data set, return the relative position within the item's
-     * "page" for the given expanded/collapsed state.
-     *
-     * @param position              the absolute position of an item
-     * @param findForCollapsedState true if looking for the paging position in the collapsed state
-     * @return the item's relative position in its "page" of data.
-     */
-    private int getRelativePagingPosition(int position, boolean findForCollapsedState) {
-        if (findForCollapsedState) {
-            if (position == 0) {
-                // First item is always the first item of its page
-                return 0;
-            }
-
-            // Get position within a "page". For example, if paging in groups of two, any even position
-            // will have a relative position of 0, while any odd position will have a relative position
-            // of 1 (if the paging offset is zero).
-            return (position - getFirstPagePagingOffset()) % mItemsPerPage;
-        } else {
-            // Always one item per page when in expanded mode
-            return 0;
-        }
+        return mPagingCalculator.getPaddingToCenterFirstItem();
     }
 
     /**
@@ -583,17 +1087,7 @@ public class ExpandableImageView extends RecyclerView implements
             return 1;
         }
 
-        if (position == 0 && mIsCollapsed && mAreEndPagesCentered) {
-            // The first page is a page of 1 item here
-            return 1;
-        } else if (position + mItemsPerPageCurrent > mAdapter.getItemCount()) {
-            // We are at a position where the "page" isn't full, so the number of selectable items
-            // should be reduced.
-            return mAdapter.getItemCount() - position;
-        } else {
-            // We are safe to return the full number of items;
-            return mItemsPerPageCurrent;
-        }
+        return mPagingCalculator.getSelectableItemsPerPageForPosition(position);
     }
 
     /**
@@ -603,21 +1097,42 @@ public class ExpandableImageView extends RecyclerView implements
      * @return a valid target position less than or equal to the given position
      */
     private int getValidPagingPosition(int position) {
-        return position - getRelativePagingPosition(position);
+        return mPagingCalculator.getValidPagingPosition(position);
     }
 
     /**
      * @return the current width (in pixels) of each child views of the pager
      */
     public int getViewWidth() {
-        return Math.round(mDisplayWidth * mViewWidthFractionCurrent);
+        return mPagingCalculator.getViewWidth();
     }
 
     /**
      * @return the width (in pixels) of each child views of the pager in the collapsed state
      */
     public int getViewWidthMin() {
-        return Math.round(mDisplayWidth * mViewWidthFractionMin);
+        return mPagingCalculator.getViewWidthMin();
+    }
+
+    /**
+     * Brings the paging calculator up to date with the whole paging configuration. Setters that
+     * change a single value pass it on to the calculator themselves.
+     */
+    private void updatePagingCalculator() {
+        mPagingCalculator.setDisplayWidth(mDisplayWidth);
+        mPagingCalculator.setItemCount(mData.size());
+        mPagingCalculator.setItemsPerPage(mItemsPerPage);
+        mPagingCalculator.setItemsPerPageCurrent(mItemsPerPageCurrent);
+        mPagingCalculator.setViewWidthFractionMin(mViewWidthFractionMin);
+        mPagingCalculator.setViewWidthFractionCurrent(mViewWidthFractionCurrent);
+        mPagingCalculator.setCollapsed(mIsCollapsed);
+        mPagingCalculator.setEndPagesCentered(mAreEndPagesCentered);
+    }
+
+    // Passes a change of the data on to everything that depends on the number of items
+    private void onDataChanged() {
+        mAdapter.onDataChanged();
+        mPagingCalculator.setItemCount(mData.size());
     }
 
     private void init() {
@@ -626,14 +1141,28 @@ public class ExpandableImageView extends RecyclerView implements
         final Context context = getContext();
         DisplayMetrics metrics = resources.getDisplayMetrics();
         mDisplayWidth = metrics.widthPixels;
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        mMemoryClass = activityManager.getMemoryClass();
+        updatePagingCalculator();
 
         // Setup adapter and layout manager
         mAdapter = new ExpandableImageViewAdapter(mData);
         mAdapter.setOnImageClickedListener(this);
+        mMetrics = new ExpandableImageViewMetrics();
+        mAdapter.setMetrics(mMetrics);
+        mPrefetchScheduler = new ImagePrefetchScheduler(mAdapter);
+        mMemoryPressureHandler = new MemoryPressureHandler(this);
+        mItemTransforms = new ItemTransforms(this);
+        mFrameMetricsCollector = new FrameMetricsCollector();
+        WindowManager windowManager =
+                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        mFrameMetricsCollector.setRefreshRate(windowManager.getDefaultDisplay().getRefreshRate());
         mLayoutManager = new CustomLinearLayoutManager(context, LinearLayoutManager.HORIZONTAL,
-                false, NUM_EAGERLY_LOADED_SCREENS);
+                false);
         setAdapter(mAdapter);
         setLayoutManager(mLayoutManager);
+        updateEagerLoading();
 
         // Initialize adapter state
         updateAdapterState();
@@ -656,41 +1185,26 @@ public class ExpandableImageView extends RecyclerView implements
         });
     }
 
-    private boolean isPaddingVisibleForItem(int position) {
-        return isPaddingVisibleForItem(position, mIsCollapsed);
-    }
-
-    private boolean isPaddingVisibleForItem(int position, boolean isForCollapsedState) {
-        if (!isForCollapsedState || !mAreEndPagesCentered) {
-            // There is no padding so this is always false
-            return false;
-        }
-
-        if (position == getLastPosition()) {
-            // Last position is always centered
-            return true;
-        }
-
-        // The padding is visible for any item on screen when the first item is centered. That
-        // includes the first item and the other views on screen with it (even if only partially).
-        int halfViewWidth = (getViewWidthMin() / 2);
-        int numHalfViewWidthsToCenter = (mDisplayWidth / halfViewWidth) / 2;
-        long numViewsToRightOfCenterItem = Math.round(Math.ceil(numHalfViewWidthsToCenter / 2f));
-        return (position <= numViewsToRightOfCenterItem);
-    }
-
     private boolean isValidPagingPosition(int position) {
-        if (position == 0) {
-            // The first position is always valid
-            return true;
-        }
-
-        return ((position - getFirstPagePagingOffset()) % mItemsPerPageCurrent == 0);
+        return mPagingCalculator.isValidPagingPosition(position);
     }
 
-    // Convenience method for notifying the adapter of data set changes
+    // Convenience method for notifying the adapter of data set changes. A full rebind is only
+    // performed when the data itself has been replaced, otherwise only the changed item properties
+    // are rebound (and no images are reloaded).
     private void notifyDataSetChanged() {
-        mAdapter.notifyDataSetChanged();
+        if (mIsDataSetChanged) {
+            mIsDataSetChanged = false;
+            mAdapter.clearPendingChanges();
+            mAdapter.notifyDataSetChanged();
+            if (mData.isEmpty()) {
+                mMetrics.cancelHeroImage();
+            } else {
+                mMetrics.onHeroImageRequested(SystemClock.uptimeMillis());
+            }
+        } else {
+            mAdapter.dispatchPendingChanges();
+        }
     }
 
     /**
@@ -722,12 +1236,15 @@ public class ExpandableImageView extends RecyclerView implements
      * Failure to call this method when needed may result in unusual behavior.
      */
     public void refresh() {
+        updatePagingCalculator();
         updateViewWidthFractionCurrent();
         updateCurrentPagingViewNumber();
         updateAdapterState();
         updateContentDescription();
         updatePadding();
         updateViewHeight();
+        updatePrefetchConfiguration();
+        updateEagerLoading();
         notifyDataSetChanged();
     }
 
@@ -746,11 +1263,63 @@ public class ExpandableImageView extends RecyclerView implements
     /**
      * Set the configuration for loading the underlying bitmap for each image. This may be used, for
      * example, to sacrifice image quality to reduce memory usage. The default is ARGB_8888.
+     * <p>
+     * The configuration is part of every {@link ImageRequest}, so it only applies to images loaded
+     * through an {@link ImageLoader} or an {@link OnSizedImageEventListener}.
      *
      * @param bitmapConfig the configuration to use
      */
     public void setBitmapConfig(@NonNull Bitmap.Config bitmapConfig) {
         mBitmapConfig = bitmapConfig;
+        updateAdapterState();
+    }
+
+    /**
+     * Sets how the bitmap configuration is chosen for the collapsed and expanded states. The
+     * default is {@link BitmapConfigMode#FIXED}.
+     *
+     * @param bitmapConfigMode the mode to use
+     */
+    public void setBitmapConfigMode(@NonNull BitmapConfigMode bitmapConfigMode) {
+        mBitmapConfigMode = bitmapConfigMode;
+        updateAdapterState();
+    }
+
+    /**
+     * When enabled, images are decoded as hardware bitmaps on devices that support them (API 26+).
+     * Hardware bitmaps only live in graphics memory, which frees up the Java heap, but they can not
+     * be reused as decode targets. Disabled by default.
+     *
+     * @param enabled true if hardware bitmaps should be used where supported
+     */
+    public void setHardwareBitmapsEnabled(boolean enabled) {
+        mHardwareBitmapsEnabled = enabled;
+        updateAdapterState();
+    }
+
+    /**
+     * @return the bitmap configuration images should currently be decoded with. Apps loading
+     * images through {@link OnImageEventListener} should pass this on to their image library.
+     */
+    @NonNull
+    public Bitmap.Config getBitmapConfig() {
+        return getBitmapConfigForState(mIsCollapsed);
+    }
+
+    private Bitmap.Config getBitmapConfigForState(boolean isCollapsed) {
+        if (mMemoryDegradation == MemoryDegradation.LOW_MEMORY_BITMAP_CONFIG) {
+            return Bitmap.Config.RGB_565;
+        }
+
+        if (isCollapsed && mBitmapConfigMode == BitmapConfigMode.LOW_MEMORY_WHEN_COLLAPSED) {
+            return Bitmap.Config.RGB_565;
+        }
+
+        if (mHardwareBitmapsEnabled && BitmapConfigs.isHardwareConfigSupported()) {
+            return BitmapConfigs.getHardwareConfig();
+        }
+
+        return mBitmapConfig;
     }
 
     /**
@@ -762,6 +1331,7 @@ public class ExpandableImageView extends RecyclerView implements
      */
     public void setCollapsed(boolean collapsed) {
         mIsCollapsed = collapsed;
+        mPagingCalculator.setCollapsed(collapsed);
     }
 
     /**
@@ -773,6 +1343,41 @@ public class ExpandableImageView extends RecyclerView implements
      */
     public void setCollapsedNumberOfItemsPerPage(int itemsPerPage) {
         mItemsPerPage = itemsPerPage;
+        mPagingCalculator.setItemsPerPage(itemsPerPage);
+        updateSharedPoolSize();
+    }
+
+    /**
+     * Makes this view take its image holders from (and return them to) a pool shared with other
+     * ExpandableImageViews. Children are returned to the pool when this view is detached, so
+     * carousels scrolling out of a list make their holders available to the ones scrolling in.
+     *
+     * @param pool the shared pool
+     * @see ExpandableImageViewPool#attach(ExpandableImageView...)
+     */
+    public void setSharedRecycledViewPool(@NonNull ExpandableImageViewPool pool) {
+        mSharedPool = pool;
+        setRecycledViewPool(pool);
+        mLayoutManager.setRecycleChildrenOnDetach(true);
+        updateSharedPoolSize();
+    }
+
+    // Used to prewarm a shared pool
+    RecyclerView.ViewHolder createImageViewHolder() {
+        return mAdapter.createViewHolder(this, ExpandableImageViewAdapter.VIEW_TYPE_IMAGE);
+    }
+
+    private void updateSharedPoolSize() {
+        if (mSharedPool == null) {
+            return;
+        }
+
+        // In the collapsed state: the visible items (plus the one scrolling in), the items laid
+        // out ahead of them, the item view cache and the page prefetched while scrolling
+        int visibleItems = (int) Math.ceil(1f / mViewWidthFractionMin) + 1;
+        int itemsAhead = Math.max(0, mEagerLoadPolicy.getItemsAhead(mItemsPerPage, mMemoryClass));
+        mSharedPool.onHoldersPerCarouselChanged(
+                visibleItems + itemsAhead + mItemViewCacheSize + mItemsPerPage);
     }
 
     /**
@@ -783,6 +1388,8 @@ public class ExpandableImageView extends RecyclerView implements
      */
     public void setCollapsedViewWidth(float fraction) {
         mViewWidthFractionMin = fraction;
+        mPagingCalculator.setViewWidthFractionMin(fraction);
+        updateSharedPoolSize();
     }
 
     /**
@@ -796,14 +1403,157 @@ public class ExpandableImageView extends RecyclerView implements
         mAdapter.setHeroImagePlaceholderDrawable(drawable);
     }
 
+    /**
+     * Sets the loader used to load images. Once set, images are loaded through an
+     * {@link ImagePipeline}, which cancels loads for recycled views and shares loads between
+     * identical requests, and the load/clear callbacks of {@link OnImageEventListener} are no
+     * longer called. Loaded bitmaps are kept in the app-wide default {@link BitmapMemoryCache}.
+     *
+     * @param imageLoader the loader to use, or null to go back to the listener callbacks
+     */
+    public void setImageLoader(@Nullable ImageLoader imageLoader) {
+        setImageLoader(imageLoader, imageLoader == null ? null
+                : BitmapMemoryCache.getDefault(getContext()));
+    }
+
+    /**
+     * Same as {@link #setImageLoader(ImageLoader)}, but with a custom memory cache.
+     *
+     * @param imageLoader the loader to use, or null to go back to the listener callbacks
+     * @param memoryCache the cache to keep loaded bitmaps in, or null to disable caching
+     */
+    public void setImageLoader(@Nullable ImageLoader imageLoader,
+                               @Nullable BitmapMemoryCache memoryCache) {
+        mImagePipeline = imageLoader == null ? null : new ImagePipeline(imageLoader, memoryCache);
+        if (mImagePipeline != null) {
+            mImagePipeline.setDiskCache(mDiskImageCache);
+            mImagePipeline.setOnImageShownListener(mImageShownListener);
+        }
+        mAdapter.setImagePipeline(mImagePipeline);
+        mPrefetchScheduler.setImagePipeline(mImagePipeline);
+        updateImageQualityUpdates();
+    }
+
+    /**
+     * Sets an optional disk cache for images loaded through the {@link ImageLoader}. Images are
+     * stored downsampled to their collapsed and expanded target sizes so they can be shown again
+     * right away, e.g. when coming back to a screen.
+     *
+     * @param diskImageCache the disk cache, or null to disable it
+     * @see DiskImageCache#open(Context)
+     */
+    public void setImageDiskCache(@Nullable DiskImageCache diskImageCache) {
+        mDiskImageCache = diskImageCache;
+        if (mImagePipeline != null) {
+            mImagePipeline.setDiskCache(diskImageCache);
+        }
+    }
+
+    /**
+     * @return the pipeline images are loaded through, or null if no {@link ImageLoader} is set
+     */
+    @Nullable
+    public ImagePipeline getImagePipeline() {
+        return mImagePipeline;
+    }
+
     /**
      * Sets the data used for this image pager.
      *
      * @param imageUrls the list of images to display
      */
     public void setImageUrls(List<ExpandableImageViewPagerItem> imageUrls) {
+        mDataGeneration++;
         mData.clear();
         mData.addAll(imageUrls);
+        onDataChanged();
+        mIsDataSetChanged = true;
+    }
+
+    /**
+     * Updates the data used for this image pager incrementally. The difference between the current
+     * and the new data is computed on a background thread (items are matched by their image URL and
+     * item id) and only the affected items are then inserted, removed, moved or rebound. The current
+     * scroll position and the selected page are kept whenever the selected item is still present.
+     * <p>
+     * Unlike {@link #setImageUrls(List)}, there is no need to call {@link #refresh()} afterwards.
+     *
+     * @param imageUrls the list of images to display
+     */
+    public void updateImageUrls(List<ExpandableImageViewPagerItem> imageUrls) {
+        final int generation = ++mDataGeneration;
+        final List<ExpandableImageViewPagerItem> oldData = new ArrayList<>(mData);
+        final List<ExpandableImageViewPagerItem> newData = new ArrayList<>(imageUrls);
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new ExpandableImageViewDiffCallback(oldData, newData), true);
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyImageUrlsDiff(generation, newData, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyImageUrlsDiff(int generation, List<ExpandableImageViewPagerItem> newData,
+                                    DiffUtil.DiffResult result) {
+        if (generation != mDataGeneration) {
+            // The data has been replaced again since this diff was requested
+            return;
+        }
+
+        // Remember what is currently selected so that it can be kept selected
+        int oldSelectedPosition = getFirstSelectedItem();
+        ExpandableImageViewPagerItem oldSelectedItem = null;
+        int oldSelectedOffset = 0;
+        if (oldSelectedPosition < mData.size()) {
+            oldSelectedItem = mData.get(oldSelectedPosition);
+            View oldSelectedView = mLayoutManager.findViewByPosition(oldSelectedPosition);
+            if (oldSelectedView != null) {
+                oldSelectedOffset = oldSelectedView.getLeft() - getPaddingLeft();
+            }
+        }
+
+        mData.clear();
+        mData.addAll(newData);
+        onDataChanged();
+        result.dispatchUpdatesTo(mAdapter);
+
+        // The "x of y" content descriptions of the remaining items may have changed as well
+        mAdapter.dispatchPendingChanges();
+
+        if (mData.isEmpty()) {
+            return;
+        }
+
+        int newSelectedPosition = indexOfItem(oldSelectedItem);
+        if (newSelectedPosition == NO_POSITION) {
+            // The selected item is gone, stay as close to the old position as possible
+            newSelectedPosition = Math.min(oldSelectedPosition, getLastPosition());
+        }
+        newSelectedPosition = getValidPagingPosition(newSelectedPosition);
+
+        if (newSelectedPosition != oldSelectedPosition) {
+            mLayoutManager.scrollToPositionWithOffset(newSelectedPosition, oldSelectedOffset);
+            notifyListenerForPosition(newSelectedPosition);
+        }
+    }
+
+    private int indexOfItem(@Nullable ExpandableImageViewPagerItem item) {
+        if (item == null) {
+            return NO_POSITION;
+        }
+
+        for (int i = 0; i < mData.size(); i++) {
+            if (ExpandableImageViewDiffCallback.isSameItem(item, mData.get(i))) {
+                return i;
+            }
+        }
+        return NO_POSITION;
     }
 
     /**
@@ -816,10 +1566,23 @@ public class ExpandableImageView extends RecyclerView implements
      */
     public void setEndPagesCentered(boolean endPagesCentered) {
         mAreEndPagesCentered = endPagesCentered;
+        mPagingCalculator.setEndPagesCentered(endPagesCentered);
     }
 
     public void setListener(OnImageEventListener listener) {
         mListener = listener;
+        mAdapter.setOnImageClickedListener(listener instanceof OnSizedImageEventListener
+                ? mSizedImageListener : this);
+        updateImageQualityUpdates();
+    }
+
+    private void updateImageQualityUpdates() {
+        // Images are only reloaded at their new size after expanding/collapsing when the loading
+        // actually makes use of the target size. Once the expand animation has finished (see
+        // onLayout) the expanded page asks for its full resolution image, and after collapsing
+        // the collapsed-size images replace the large ones so they can be freed.
+        mAdapter.setImageQualityUpdateEnabled(mImagePipeline != null
+                || mListener instanceof OnSizedImageEventListener);
     }
 
     /**
@@ -842,6 +1605,7 @@ public class ExpandableImageView extends RecyclerView implements
 
     private void setViewWidthFractionCurrent(float fraction, boolean isCollapsed) {
         mViewWidthFractionCurrent = fraction;
+        mPagingCalculator.setViewWidthFractionCurrent(fraction);
         updateCurrentPagingViewNumber(isCollapsed);
         updateAdapterState(isCollapsed);
     }
@@ -853,8 +1617,12 @@ public class ExpandableImageView extends RecyclerView implements
      * @param velocityX the velocity in the x direction. Only required for a fling motion.
      * @param isFling   must be set to true if being called as part of a fling
      */
-    private void snapToPosition(Float velocityX, boolean isFling) {
-        // Cancel any current scrolling
+    @VisibleForTesting
+    void snapToPosition(Float velocityX, boolean isFling) {
+        // Cancel any current scrolling. Any previous snap is replaced by this one, so forget about
+        // it first, otherwise stopping it would report its target.
+        mPendingSelectedPosition = NO_POSITION;
+        removeCallbacks(mSnapSettledRunnable);
         stopScroll();
 
         if (isFling && velocityX == null) {
@@ -876,9 +1644,15 @@ public class ExpandableImageView extends RecyclerView implements
         }
 
         int currentViewOffset = firstVisibleView.getLeft();
-        final int targetPosition = getNewTargetPosition(firstVisiblePosition, currentViewOffset,
+        int targetPosition = getNewTargetPosition(firstVisiblePosition, currentViewOffset,
                 velocityX, isFling);
 
+        // Start loading the destination page (and the one after it) while the snap is running. A
+        // fling to the left moves towards the end of the data.
+        int direction = isFling ? -(int) Math.signum(velocityX)
+                : Integer.signum(targetPosition - firstVisiblePosition);
+        mPrefetchScheduler.onSnapStarted(targetPosition, mItemsPerPageCurrent, direction);
+
         // The desired scroll amount is the amount needed to bring the first visible position to
         // be left aligned, plus the desired change in position. Note that the first/last positions
         // may not need this full scrolling amount due to possible padding, so this needs to be
@@ -891,124 +1665,217 @@ public class ExpandableImageView extends RecyclerView implements
         }
         int positionDiff = targetPosition - firstVisiblePosition;
         int scrollChangeFromPositionChange = positionDiff * getViewWidth();
-        final int desiredScrollAmount = currentViewOffset + scrollChangeFromPositionChange - extraPadding;
+        int desiredScrollAmount = currentViewOffset + scrollChangeFromPositionChange - extraPadding;
+
+        // The listener is notified once the scroll state goes back to idle, see
+        // onScrollStateChanged(int)
+        mPendingSelectedPosition = targetPosition;
+        mSnapRemainingDx = desiredScrollAmount;
 
         if (desiredScrollAmount == 0) {
-            // Don't need to perform any scrolling
+            // Already in place, so there is no scroll to wait for. The page is reported as settled
+            // on the next pass of the message queue instead.
+            post(mSnapSettledRunnable);
             return;
         }
 
-        // Use a custom smooth scroller to perform the scroll operation
-        SmoothScroller scroller = new SmoothScroller() {
-            @Override
-            protected void onStart() {
-                // Don't need to do anything here
-            }
-
-            @Override
-            protected void onStop() {
-                // This call to onStop actually happens while the view is still scrolling, so we'll
-                // wait a little bit before notifying the listener. We could wait until the scroll
-                // state is SCROLL_STATE_IDLE, but that tends to be a bit too late. This is a
-                // compromise.
-                postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        notifyListenerForPosition(targetPosition);
-                    }
-                }, PAGING_LISTENER_DELAY);
-            }
-
-            @Override
-            protected void onSeekTargetStep(int dx, int dy, State state, Action action) {
-                // Don't need to do anything here
-            }
-
-            @Override
-            protected void onTargetFound(View targetView, State state, Action action) {
-                // Update the action with our desired values
-                action.setDx(desiredScrollAmount);
-                action.setDuration(PAGING_ANIMATION_TIME);
-            }
-        };
-        scroller.setTargetPosition(targetPosition);
-        mLayoutManager.startSmoothScroll(scroller);
+        mSnapScroller.setScrollAmount(desiredScrollAmount);
+        mSnapScroller.setTargetPosition(targetPosition);
+        mLayoutManager.startSmoothScroll(mSnapScroller);
     }
 
     private void toggleExpandedState(final int position) {
         if (mIsAnimatingExpandedState) {
-            // Do nothing
+            // Head back to where the animation started from
+            reverseExpandedStateAnimation();
+            return;
+        }
+
+        mIsExpandAnimationReversed = false;
+
+        if (mExpandAnimationMode == ExpandAnimationMode.TRANSFORM) {
+            startTransformAnimation(position);
             return;
         }
 
-        // List for keeping track of available animators
-        List<Animator> animators = new ArrayList<>();
+        prepareLayoutAnimation(position);
+        if (mLayoutAnimator == null) {
+            mLayoutAnimator = createLayoutAnimator();
+        }
+        mLayoutAnimator.start();
+    }
 
+    /**
+     * Captures everything the expand/collapse animation in {@link ExpandAnimationMode#LAYOUT} mode
+     * needs for toggling the current state, anchored at the given position.
+     *
+     * @param position the position of the item that was clicked
+     */
+    @VisibleForTesting
+    void prepareLayoutAnimation(int position) {
         // Get a reference to the selected view
         final View targetView = mLayoutManager.findViewByPosition(position);
 
         // Animate the height and widths of the view and its children and the start/end padding (if
         // necessary)
-        final int initialHeight, finalHeight, initialPadding, finalPadding;
+        mIsLayoutAnimationFromCollapsed = mIsCollapsed;
         if (mIsCollapsed) {
-            initialHeight = mHeightMin;
-            finalHeight = mHeightMax;
-            initialPadding = getPaddingToCenterFirstItem();
-            finalPadding = 0;
+            mInitialAnimationHeight = mHeightMin;
+            mFinalAnimationHeight = mHeightMax;
+            mInitialAnimationPadding = getPaddingToCenterFirstItem();
+            mFinalAnimationPadding = 0;
         } else {
-            initialHeight = mHeightMax;
-            finalHeight = mHeightMin;
-            initialPadding = 0;
-            finalPadding = getPaddingToCenterFirstItem();
+            mInitialAnimationHeight = mHeightMax;
+            mFinalAnimationHeight = mHeightMin;
+            mInitialAnimationPadding = 0;
+            mFinalAnimationPadding = getPaddingToCenterFirstItem();
         }
-        animators.add(getLayoutChangeAnimator(initialHeight, finalHeight, initialPadding,
-                finalPadding));
 
         // Animate scrolling of the items to smoothly transition into/out of full-width mode
-        int leftStartValue, leftEndValue;
         if (mIsCollapsed) {
-            leftStartValue = targetView.getLeft();
+            mInitialAnchorViewLeftValue = targetView.getLeft();
 
             // Always end full screen
-            leftEndValue = 0;
+            mFinalAnchorViewLeftValue = 0;
         } else {
             // Always start out full screen
-            leftStartValue = 0;
+            mInitialAnchorViewLeftValue = 0;
 
             // Animate back to the appropriate position within a page block
-            leftEndValue = getLeftEndValueForPosition(position);
+            mFinalAnchorViewLeftValue = getLeftEndValueForPosition(position);
+        }
+        mAnchorView = targetView;
+        mDesiredAnchorViewLeftValue = mInitialAnchorViewLeftValue;
+        mIsAnchorViewPositioningActive = true;
+    }
+
+    /**
+     * Starts an expand/collapse animation in {@link ExpandAnimationMode#TRANSFORM} mode. The pager
+     * can not draw outside of its own bounds, so before the animation starts the layout is changed
+     * to the taller height and the narrower item widths of the two states: when expanding, only the
+     * height changes up front and the new widths and scroll position follow at the end; when
+     * collapsing, the new widths and scroll position are laid out up front and only the height
+     * changes at the end. The item positions in between come from {@link ItemTransforms}, with the
+     * same end positions as in {@link ExpandAnimationMode#LAYOUT} mode.
+     */
+    private void startTransformAnimation(int position) {
+        View targetView = mLayoutManager.findViewByPosition(position);
+        if (targetView == null) {
+            return;
         }
-        animators.add(getLeftEdgeAnimator(targetView, leftStartValue, leftEndValue));
 
-        AnimatorSet set = new AnimatorSet();
-        set.playTogether(animators);
-        set.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                super.onAnimationStart(animation);
-                mIsAnimatingExpandedState = true;
+        final boolean isExpanding = mIsCollapsed;
+        int expandedWidth = Math.round(mDisplayWidth * mViewWidthFractionMax);
+        if (isExpanding) {
+            mItemTransforms.setGeometry(position, targetView.getLeft(), 0, getViewWidthMin(),
+                    expandedWidth, mHeightMin, mHeightMax);
+        } else {
+            mItemTransforms.setGeometry(position, 0, getLeftEndValueForPosition(position),
+                    expandedWidth, getViewWidthMin(), mHeightMax, mHeightMin);
+        }
 
-                // Disable eager loading for now. This probably shouldn't matter much, as we really
-                // shouldn't be binding views during this animation but this is nice to have just
-                // in case.
-                mLayoutManager.setNumberOfScreensToEagerLoad(0);
+        mIsAnimatingExpandedState = true;
+        mTransformAnchorPosition = position;
+        mLayoutManager.setNumberOfItemsToEagerLoad(0);
+
+        if (isExpanding) {
+            ViewGroup.LayoutParams params = getLayoutParams();
+            params.height = mHeightMax;
+            setLayoutParams(params);
+        } else {
+            setViewWidthFractionCurrent(mViewWidthFractionMin, true);
+            for (int i = 0; i < mLayoutManager.getChildCount(); i++) {
+                mLayoutManager.getChildAt(i).getLayoutParams().width = getViewWidth();
+            }
+            if (mAreEndPagesCentered) {
+                int padding = getPaddingToCenterFirstItem();
+                setPadding(padding, 0, padding, 0);
             }
 
+            // The offset is relative to the start padding
+            mLayoutManager.scrollToPositionWithOffset(position,
+                    getLeftEndValueForPosition(position) - getPaddingLeft());
+        }
+
+        if (mTransformAnimator == null) {
+            mTransformAnimator = createTransformAnimator();
+        }
+        mIsTransformAnimationPending = true;
+        requestLayout();
+    }
 
+    private ValueAnimator createTransformAnimator() {
+        ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(HEIGHT_ANIMATION_TIME);
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                mItemTransforms.applyFraction(animation.getAnimatedFraction());
+            }
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationEnd(Animator animation) {
                 super.onAnimationEnd(animation);
-
-                // We will perform any final work (such as refreshing the current view state) in
-                // onLayout; if that has not already happened, explicitly request a layout pass to
-                // ensure it is triggered.
-                if (mIsAnimatingExpandedState) {
-                    requestLayout();
-                }
+                onTransformAnimationEnd();
             }
         });
-        set.setDuration(HEIGHT_ANIMATION_TIME);
-        set.start();
+        return animator;
+    }
+
+    /**
+     * Reverses the running expand/collapse animation from its current fraction. The paging state
+     * is only updated once the animation ends, so reversing leaves it as it was.
+     */
+    private void reverseExpandedStateAnimation() {
+        ValueAnimator animator;
+        if (mLayoutAnimator != null && mLayoutAnimator.isRunning()) {
+            animator = mLayoutAnimator;
+        } else if (mTransformAnimator != null && mTransformAnimator.isRunning()) {
+            animator = mTransformAnimator;
+        } else {
+            // The animation is just about to start or has just finished animating and is waiting
+            // for its final layout, so there is nothing left to reverse
+            return;
+        }
+
+        mIsExpandAnimationReversed = !mIsExpandAnimationReversed;
+        animator.reverse();
+    }
+
+    private void onTransformAnimationEnd() {
+        mFrameMetricsCollector.endPhase();
+        mItemTransforms.reset();
+        mIsAnimatingExpandedState = false;
+        if (!mIsExpandAnimationReversed) {
+            mIsCollapsed = !mIsCollapsed;
+            mPagingCalculator.setCollapsed(mIsCollapsed);
+        }
+        if (!mIsCollapsed) {
+            // Expanded items are always left aligned (the padding is removed by the refresh)
+            mLayoutManager.scrollToPositionWithOffset(mTransformAnchorPosition, 0);
+        }
+
+        // Commits the remaining layout changes and notifies the listener
+        mRefreshCurrentStateRunnable.run();
+    }
+
+    /**
+     * Sets how the expand/collapse transition is animated. Defaults to
+     * {@link ExpandAnimationMode#LAYOUT}.
+     *
+     * @param expandAnimationMode the animation mode
+     */
+    public void setExpandAnimationMode(@NonNull ExpandAnimationMode expandAnimationMode) {
+        mExpandAnimationMode = expandAnimationMode;
+    }
+
+    /**
+     * @return how the expand/collapse transition is animated
+     */
+    @NonNull
+    public ExpandAnimationMode getExpandAnimationMode() {
+        return mExpandAnimationMode;
     }
 
     private void updateAdapterState() {
@@ -1017,7 +1884,9 @@ public class ExpandableImageView extends RecyclerView implements
 
     private void updateAdapterState(boolean isCollapsed) {
         mAdapter.setViewWidth(getViewWidth());
+        mAdapter.setItemHeight(isCollapsed ? mHeightMin : mHeightMax);
         mAdapter.setCollapsed(isCollapsed);
+        mAdapter.setBitmapConfig(getBitmapConfigForState(isCollapsed));
     }
 
     private void updateContentDescription() {
@@ -1034,6 +1903,7 @@ public class ExpandableImageView extends RecyclerView implements
         } else {
             mItemsPerPageCurrent = 1;
         }
+        mPagingCalculator.setItemsPerPageCurrent(mItemsPerPageCurrent);
     }
 
     private void updatePadding() {
@@ -1045,6 +1915,10 @@ public class ExpandableImageView extends RecyclerView implements
         }
     }
 
+    private void updatePrefetchConfiguration() {
+        mLayoutManager.setPrefetchConfiguration(mItemsPerPageCurrent, mViewWidthFractionCurrent);
+    }
+
     private void updateViewHeight() {
         ViewGroup.LayoutParams params = getLayoutParams();
         if (mIsCollapsed) {
@@ -1061,6 +1935,44 @@ public class ExpandableImageView extends RecyclerView implements
         } else {
             mViewWidthFractionCurrent = mViewWidthFractionMax;
         }
+        mPagingCalculator.setViewWidthFractionCurrent(mViewWidthFractionCurrent);
+    }
+
+    /**
+     * Smooth scroller that scrolls by a fixed amount once its target position is laid out. A
+     * single instance is reused for every snap; it must be stopped (e.g. through
+     * {@link RecyclerView#stopScroll()}) before being started again.
+     */
+    private static class SnapScroller extends SmoothScroller {
+
+        private int mScrollAmount;
+
+        void setScrollAmount(int scrollAmount) {
+            mScrollAmount = scrollAmount;
+        }
+
+        @Override
+        protected void onStart() {
+            // Don't need to do anything here
+        }
+
+        @Override
+        protected void onStop() {
+            // This is called as soon as the scroll towards the target has been started, well
+            // before it settles, so there is nothing to do here either
+        }
+
+        @Override
+        protected void onSeekTargetStep(int dx, int dy, State state, Action action) {
+            // Don't need to do anything here
+        }
+
+        @Override
+        protected void onTargetFound(View targetView, State state, Action action) {
+            // Update the action with our desired values
+            action.setDx(mScrollAmount);
+            action.setDuration(PAGING_ANIMATION_TIME);
+        }
     }
 
     //----- Methods for state saving -----//
@@ -1092,7 +2004,10 @@ public class ExpandableImageView extends RecyclerView implements
         mItemsPerPage = state.itemsPerPage;
         mItemsPerPageCurrent = state.itemsPerPageCurrent;
         mBitmapConfig = state.bitmapConfig;
+        mBitmapConfigMode = state.bitmapConfigMode;
+        mHardwareBitmapsEnabled = state.hardwareBitmapsEnabled;
         mBaseContentDescription = state.baseContentDescription;
+        // Also brings the paging calculator up to date
         refresh();
     }
 
@@ -1108,6 +2023,8 @@ public class ExpandableImageView extends RecyclerView implements
         state.itemsPerPage = mItemsPerPage;
         state.itemsPerPageCurrent = mItemsPerPageCurrent;
         state.bitmapConfig = mBitmapConfig;
+        state.bitmapConfigMode = mBitmapConfigMode;
+        state.hardwareBitmapsEnabled = mHardwareBitmapsEnabled;
         state.baseContentDescription = mBaseContentDescription;
     }
 
@@ -1122,6 +2039,7 @@ public class ExpandableImageView extends RecyclerView implements
         boolean areEndPagesCentered;
         boolean expandDisabled;
         boolean isCollapsed;
+        boolean hardwareBitmapsEnabled;
         float viewWidthFractionCurrent;
         float viewWidthFractionMin;
         int firstSelectedItem;
@@ -1130,6 +2048,7 @@ public class ExpandableImageView extends RecyclerView implements
         int itemsPerPage;
         int itemsPerPageCurrent;
         Bitmap.Config bitmapConfig;
+        BitmapConfigMode bitmapConfigMode;
         String baseContentDescription;
 
         SavedState(Parcelable superState) {
@@ -1140,11 +2059,12 @@ public class ExpandableImageView extends RecyclerView implements
             // We need to force the use of the RecyclerView's class loader
             this.superState = in.readParcelable(RecyclerView.class.getClassLoader());
 
-            boolean[] booleans = new boolean[3];
+            boolean[] booleans = new boolean[4];
             in.readBooleanArray(booleans);
             areEndPagesCentered = booleans[0];
             expandDisabled = booleans[1];
             isCollapsed = booleans[2];
+            hardwareBitmapsEnabled = booleans[3];
 
             viewWidthFractionCurrent = in.readFloat();
             viewWidthFractionMin = in.readFloat();
@@ -1158,6 +2078,7 @@ public class ExpandableImageView extends RecyclerView implements
             int tmpBitmapConfig = in.readInt();
             bitmapConfig = tmpBitmapConfig == -1 ? Bitmap.Config.ARGB_8888 :
                     Bitmap.Config.values()[tmpBitmapConfig];
+            bitmapConfigMode = BitmapConfigMode.values()[in.readInt()];
 
             baseContentDescription = in.readString();
         }
@@ -1174,7 +2095,8 @@ public class ExpandableImageView extends RecyclerView implements
         @Override
         public void writeToParcel(@NonNull Parcel out, int flags) {
             out.writeParcelable(superState, flags);
-            out.writeBooleanArray(new boolean[]{areEndPagesCentered, expandDisabled, isCollapsed});
+            out.writeBooleanArray(new boolean[]{areEndPagesCentered, expandDisabled, isCollapsed,
+                    hardwareBitmapsEnabled});
             out.writeFloat(viewWidthFractionCurrent);
             out.writeFloat(viewWidthFractionMin);
             out.writeInt(firstSelectedItem);
@@ -1183,6 +2105,7 @@ public class ExpandableImageView extends RecyclerView implements
             out.writeInt(itemsPerPage);
             out.writeInt(itemsPerPageCurrent);
             out.writeInt(bitmapConfig == null ? -1 : bitmapConfig.ordinal());
+            out.writeInt(bitmapConfigMode.ordinal());
             out.writeString(baseContentDescription);
         }
 
@@ -12,11 +12,24 @@ public abstract class ExpandableImageViewPagerItem {
     @Nullable
     public abstract String imageContentDescription();
 
+    /**
+     * @return an optional caller-supplied identifier for this item. Together with the image URL it
+     * is used to compute the item's stable id, which allows several items to share the same image.
+     * Items sharing an image without an item id get ids that depend on their order.
+     */
+    @Nullable
+    public abstract String itemId();
+
     public static ExpandableImageViewPagerItem create(String imageUrl) {
         return create(imageUrl, null);
     }
 
     public static ExpandableImageViewPagerItem create(String imageUrl, @Nullable String description) {
-        return new AutoValue_ExpandableImageViewPagerItem(imageUrl, description);
+        return create(imageUrl, description, null);
+    }
+
+    public static ExpandableImageViewPagerItem create(String imageUrl, @Nullable String description,
+                                                      @Nullable String itemId) {
+        return new AutoValue_ExpandableImageViewPagerItem(imageUrl, description, itemId);
     }
 }
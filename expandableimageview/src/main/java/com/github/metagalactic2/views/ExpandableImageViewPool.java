@@ -0,0 +1,130 @@
+package com.github.metagalactic2.views;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.github.metagalactic2.adapter.ExpandableImageViewAdapter;
+
+/**
+ * A RecycledViewPool that can be shared between many {@link ExpandableImageView}s, for example
+ * when several carousels are shown inside a vertically scrolling list. Holders can be created ahead
+ * of time with {@link #prewarm(ExpandableImageView)} so that scrolling the outer list does not
+ * need to create any new image views.
+ * <p>
+ * The size of the pool follows the largest number of holders any of the attached views uses at
+ * once: its visible items, the items laid out and prefetched ahead of them, and its item view
+ * cache.
+ */
+public class ExpandableImageViewPool extends RecyclerView.RecycledViewPool {
+
+    // Number of carousels expected to be (at least partially) visible at the same time
+    private static final int DEFAULT_VISIBLE_CAROUSELS = 3;
+
+    private final int mVisibleCarousels;
+    private int mMaxHoldersPerCarousel = 1;
+
+    // Number of image holders currently in the pool
+    private int mRecycledViewCount;
+
+    public ExpandableImageViewPool() {
+        this(DEFAULT_VISIBLE_CAROUSELS);
+    }
+
+    /**
+     * @param visibleCarousels the number of carousels using this pool that may be visible at the
+     *                         same time
+     */
+    public ExpandableImageViewPool(int visibleCarousels) {
+        if (visibleCarousels < 1) {
+            throw new IllegalArgumentException("The number of visible carousels must be at least 1.");
+        }
+        mVisibleCarousels = visibleCarousels;
+        updateMaxRecycledViews();
+    }
+
+    /**
+     * Makes each of the given views use this pool.
+     *
+     * @param views the views to attach
+     */
+    public void attach(ExpandableImageView... views) {
+        for (ExpandableImageView view : views) {
+            view.setSharedRecycledViewPool(this);
+        }
+    }
+
+    /**
+     * Fills the pool with ready-made holders up to its recommended size. Holders taken out of the
+     * pool since the last call are replaced.
+     *
+     * @param view any view attached to this pool, used to create the holders
+     */
+    public void prewarm(ExpandableImageView view) {
+        prewarm(view, getRecommendedSize() - getRecycledViewCount());
+    }
+
+    /**
+     * Adds the given number of ready-made holders to the pool. Holders beyond the pool's size are
+     * dropped.
+     *
+     * @param view  any view attached to this pool, used to create the holders
+     * @param count the number of holders to create
+     */
+    public void prewarm(ExpandableImageView view, int count) {
+        for (int i = 0; i < count; i++) {
+            putRecycledView(view.createImageViewHolder());
+        }
+    }
+
+    /**
+     * @return the number of holders this pool keeps for its attached views
+     */
+    public int getRecommendedSize() {
+        return mVisibleCarousels * mMaxHoldersPerCarousel;
+    }
+
+    /**
+     * @return the number of image holders currently in the pool, ready to be reused
+     */
+    public int getRecycledViewCount() {
+        return mRecycledViewCount;
+    }
+
+    @Override
+    public void putRecycledView(RecyclerView.ViewHolder scrap) {
+        if (scrap.getItemViewType() == ExpandableImageViewAdapter.VIEW_TYPE_IMAGE
+                && mRecycledViewCount < getRecommendedSize()) {
+            // Otherwise the holder is dropped by the pool
+            mRecycledViewCount++;
+        }
+        super.putRecycledView(scrap);
+    }
+
+    @Override
+    public RecyclerView.ViewHolder getRecycledView(int viewType) {
+        RecyclerView.ViewHolder holder = super.getRecycledView(viewType);
+        if (holder != null && viewType == ExpandableImageViewAdapter.VIEW_TYPE_IMAGE) {
+            mRecycledViewCount--;
+        }
+        return holder;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        mRecycledViewCount = 0;
+    }
+
+    /**
+     * @param holders the number of holders an attached view uses at once
+     */
+    void onHoldersPerCarouselChanged(int holders) {
+        if (holders > mMaxHoldersPerCarousel) {
+            mMaxHoldersPerCarousel = holders;
+            updateMaxRecycledViews();
+        }
+    }
+
+    private void updateMaxRecycledViews() {
+        setMaxRecycledViews(ExpandableImageViewAdapter.VIEW_TYPE_IMAGE, getRecommendedSize());
+    }
+}
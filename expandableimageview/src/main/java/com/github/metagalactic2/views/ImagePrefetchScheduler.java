@@ -0,0 +1,88 @@
+package com.github.metagalactic2.views;
+
+import android.support.annotation.Nullable;
+
+import com.github.metagalactic2.adapter.ExpandableImageViewAdapter;
+import com.github.metagalactic2.image_loader.ImagePipeline;
+import com.github.metagalactic2.image_loader.ImageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prefetches the images of the page a snap is heading to, along with the page after it in the
+ * direction of travel, as soon as the snap begins. Prefetches that no longer matter (e.g. after the
+ * direction reverses) are cancelled.
+ */
+class ImagePrefetchScheduler {
+
+    private final ExpandableImageViewAdapter mAdapter;
+    private final List<ImageRequest> mPrefetchedRequests = new ArrayList<>();
+    private final List<ImageRequest> mWantedRequests = new ArrayList<>();
+
+    private ImagePipeline mImagePipeline;
+
+    ImagePrefetchScheduler(ExpandableImageViewAdapter adapter) {
+        mAdapter = adapter;
+    }
+
+    void setImagePipeline(@Nullable ImagePipeline imagePipeline) {
+        cancelAll();
+        mImagePipeline = imagePipeline;
+    }
+
+    /**
+     * @param targetPosition the first position of the page being snapped to
+     * @param itemsPerPage   the current number of items per page
+     * @param direction      positive when moving towards the end of the data, negative when moving
+     *                       towards its start and 0 when staying on the same page
+     */
+    void onSnapStarted(int targetPosition, int itemsPerPage, int direction) {
+        if (mImagePipeline == null) {
+            return;
+        }
+
+        mWantedRequests.clear();
+        addPage(targetPosition, itemsPerPage);
+        if (direction > 0) {
+            addPage(targetPosition + itemsPerPage, itemsPerPage);
+        } else if (direction < 0) {
+            addPage(targetPosition - itemsPerPage, itemsPerPage);
+        }
+
+        // Cancel whatever is no longer wanted, e.g. the next page of the previous direction
+        for (int i = 0; i < mPrefetchedRequests.size(); i++) {
+            ImageRequest request = mPrefetchedRequests.get(i);
+            if (!mWantedRequests.contains(request)) {
+                mImagePipeline.cancelPrefetch(request);
+            }
+        }
+        mPrefetchedRequests.clear();
+
+        for (int i = 0; i < mWantedRequests.size(); i++) {
+            ImageRequest request = mWantedRequests.get(i);
+            mImagePipeline.prefetch(request);
+            mPrefetchedRequests.add(request);
+        }
+    }
+
+    void cancelAll() {
+        if (mImagePipeline != null) {
+            for (int i = 0; i < mPrefetchedRequests.size(); i++) {
+                mImagePipeline.cancelPrefetch(mPrefetchedRequests.get(i));
+            }
+        }
+        mPrefetchedRequests.clear();
+    }
+
+    private void addPage(int firstPosition, int itemsPerPage) {
+        int start = Math.max(firstPosition, 0);
+        int end = Math.min(firstPosition + itemsPerPage, mAdapter.getItemCount());
+        for (int position = start; position < end; position++) {
+            ImageRequest request = mAdapter.getImageRequestForPosition(position);
+            if (request != null) {
+                mWantedRequests.add(request);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.metagalactic2.views;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Moves and resizes the children of a horizontal RecyclerView through scale and translation
+ * properties only, so that an expand/collapse animation does not need a layout pass per frame.
+ * <p>
+ * The items are treated as a contiguous row anchored at one adapter position. For any fraction of
+ * the animation, the anchor's left edge, the item width and the item height are interpolated
+ * between their start and end values, and every child is transformed from wherever it was last
+ * laid out to its place in that row.
+ */
+class ItemTransforms {
+
+    private final RecyclerView mRecyclerView;
+
+    private int mAnchorPosition;
+    private int mStartLeft;
+    private int mEndLeft;
+    private int mStartWidth;
+    private int mEndWidth;
+    private int mStartHeight;
+    private int mEndHeight;
+
+    ItemTransforms(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+    }
+
+    /**
+     * @param anchorPosition the adapter position of the item the row is anchored at
+     * @param startLeft      the left edge of the anchor item at the start of the animation
+     * @param endLeft        the left edge of the anchor item at the end of the animation
+     * @param startWidth     the width of each item at the start of the animation
+     * @param endWidth       the width of each item at the end of the animation
+     * @param startHeight    the height of each item at the start of the animation
+     * @param endHeight      the height of each item at the end of the animation
+     */
+    void setGeometry(int anchorPosition, int startLeft, int endLeft, int startWidth, int endWidth,
+                     int startHeight, int endHeight) {
+        mAnchorPosition = anchorPosition;
+        mStartLeft = startLeft;
+        mEndLeft = endLeft;
+        mStartWidth = startWidth;
+        mEndWidth = endWidth;
+        mStartHeight = startHeight;
+        mEndHeight = endHeight;
+    }
+
+    /**
+     * Prepares the current children for being transformed by giving them hardware layers, so that
+     * each frame only recomposites them.
+     */
+    void start() {
+        for (int i = 0; i < mRecyclerView.getChildCount(); i++) {
+            View child = mRecyclerView.getChildAt(i);
+            child.setPivotX(0);
+            child.setPivotY(0);
+            child.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    /**
+     * Transforms all children to where they should be at the given point of the animation.
+     *
+     * @param fraction the fraction of the animation, from 0 (start) to 1 (end)
+     */
+    void applyFraction(float fraction) {
+        float anchorLeft = mStartLeft + fraction * (mEndLeft - mStartLeft);
+        float width = mStartWidth + fraction * (mEndWidth - mStartWidth);
+        float height = mStartHeight + fraction * (mEndHeight - mStartHeight);
+
+        for (int i = 0; i < mRecyclerView.getChildCount(); i++) {
+            View child = mRecyclerView.getChildAt(i);
+            int position = mRecyclerView.getChildLayoutPosition(child);
+            if (position == RecyclerView.NO_POSITION || child.getWidth() == 0
+                    || child.getHeight() == 0) {
+                continue;
+            }
+
+            float left = anchorLeft + (position - mAnchorPosition) * width;
+            child.setScaleX(width / child.getWidth());
+            child.setScaleY(height / child.getHeight());
+            child.setTranslationX(left - child.getLeft());
+        }
+    }
+
+    /**
+     * Removes all transforms and hardware layers from the current children.
+     */
+    void reset() {
+        for (int i = 0; i < mRecyclerView.getChildCount(); i++) {
+            View child = mRecyclerView.getChildAt(i);
+            child.setScaleX(1f);
+            child.setScaleY(1f);
+            child.setTranslationX(0f);
+
+            // The items never use a layer outside of this animation
+            child.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+    }
+}
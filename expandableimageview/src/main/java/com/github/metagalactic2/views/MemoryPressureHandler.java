@@ -0,0 +1,122 @@
+package com.github.metagalactic2.views;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.github.metagalactic2.views.ExpandableImageView.MemoryDegradation;
+
+/**
+ * Moves an {@link ExpandableImageView} through its {@link MemoryDegradation} steps as the system
+ * reports memory pressure through {@link ComponentCallbacks2#onTrimMemory(int)}. Reports only ever
+ * increase the degradation. Once no further pressure has been reported for {@link #RESTORE_DELAY}
+ * milliseconds, the view is stepped back towards {@link MemoryDegradation#NONE}, one step at a
+ * time.
+ */
+class MemoryPressureHandler implements ComponentCallbacks2 {
+
+    /**
+     * The time without any memory pressure after which the degradation is reduced by one step
+     */
+    static final long RESTORE_DELAY = 30000;
+
+    private final ExpandableImageView mView;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mRestoreRunnable = new Runnable() {
+        @Override
+        public void run() {
+            restoreOneStep();
+        }
+    };
+
+    private Context mRegisteredContext;
+
+    MemoryPressureHandler(ExpandableImageView view) {
+        mView = view;
+    }
+
+    /**
+     * Starts listening to memory pressure reported to the given context's application.
+     */
+    void register(Context context) {
+        unregister();
+        mRegisteredContext = context.getApplicationContext();
+        mRegisteredContext.registerComponentCallbacks(this);
+        scheduleRestore();
+    }
+
+    /**
+     * Stops listening to memory pressure. The current degradation is kept until the next call to
+     * {@link #register(Context)}.
+     */
+    void unregister() {
+        mHandler.removeCallbacks(mRestoreRunnable);
+        if (mRegisteredContext != null) {
+            mRegisteredContext.unregisterComponentCallbacks(this);
+            mRegisteredContext = null;
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            // Not a sign of memory pressure by itself
+            return;
+        }
+
+        apply(getDegradationForTrimLevel(level));
+    }
+
+    @Override
+    public void onLowMemory() {
+        apply(MemoryDegradation.LOW_MEMORY_BITMAP_CONFIG);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Don't need to do anything here
+    }
+
+    static MemoryDegradation getDegradationForTrimLevel(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            return MemoryDegradation.LOW_MEMORY_BITMAP_CONFIG;
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            // The process is in the background, so nothing is visible anyway
+            return MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES;
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return MemoryDegradation.LOW_MEMORY_BITMAP_CONFIG;
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            return MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES;
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return MemoryDegradation.NO_EAGER_LOADING;
+        }
+        return MemoryDegradation.NONE;
+    }
+
+    private void apply(MemoryDegradation degradation) {
+        // A milder report does not mean the pressure is gone, only the restore timer steps back
+        if (degradation.compareTo(mView.getMemoryDegradation()) > 0) {
+            mView.setMemoryDegradation(degradation);
+        }
+        scheduleRestore();
+    }
+
+    private void restoreOneStep() {
+        MemoryDegradation current = mView.getMemoryDegradation();
+        if (current == MemoryDegradation.NONE) {
+            return;
+        }
+
+        mView.setMemoryDegradation(MemoryDegradation.values()[current.ordinal() - 1]);
+        scheduleRestore();
+    }
+
+    private void scheduleRestore() {
+        mHandler.removeCallbacks(mRestoreRunnable);
+        if (mView.getMemoryDegradation() != MemoryDegradation.NONE) {
+            mHandler.postDelayed(mRestoreRunnable, RESTORE_DELAY);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.github.metagalactic2.adapter;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.github.metagalactic.views.ScalableImageView;
+import com.github.metagalactic2.image_loader.ImageRequest;
+import com.github.metagalactic2.metrics.ExpandableImageViewMetrics;
+import com.github.metagalactic2.test_utils.AllocationCounter;
+import com.github.metagalactic2.views.BuildConfig;
+import com.github.metagalactic2.views.ExpandableImageViewPagerItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ExpandableImageViewAdapterTest {
+
+    private static final int ITEM_COUNT = 20;
+    private static final int WARM_UP_PASSES = 5;
+    private static final int MEASURED_PASSES = 50;
+
+    private ExpandableImageViewAdapter mAdapter;
+    private RecyclerView.ViewHolder mViewHolder;
+
+    @Before
+    public void setUp() {
+        List<ExpandableImageViewPagerItem> items = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items.add(ExpandableImageViewPagerItem.create("http://example.com/" + i + ".jpg",
+                    i % 2 == 0 ? "Item " + i : null));
+        }
+
+        mAdapter = new ExpandableImageViewAdapter(items);
+        mAdapter.setBaseContentDescription("Image");
+        mAdapter.setViewWidth(320);
+
+        RecyclerView parent = new RecyclerView(RuntimeEnvironment.application);
+        parent.setLayoutManager(new LinearLayoutManager(RuntimeEnvironment.application));
+        mViewHolder = mAdapter.onCreateViewHolder(parent, 0);
+    }
+
+    @Test
+    public void bind_setsContentDescription() {
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+        assertEquals("Item 0 Image 1 of 20", mViewHolder.itemView.getContentDescription());
+
+        mAdapter.onBindViewHolder(mViewHolder, 1);
+        assertEquals("Image 2 of 20", mViewHolder.itemView.getContentDescription());
+    }
+
+    @Test
+    public void bindWithPayloads_doesNotReloadImage() {
+        CountingListener listener = new CountingListener();
+        mAdapter.setOnImageClickedListener(listener);
+
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+        assertEquals(1, listener.mLoadCount);
+
+        mAdapter.setViewWidth(640);
+        mAdapter.setCollapsed(true);
+        mAdapter.onBindViewHolder(mViewHolder, 0,
+                Collections.<Object>singletonList(ExpandableImageViewAdapter.Payload.VIEW_WIDTH));
+        mAdapter.onBindViewHolder(mViewHolder, 0,
+                Collections.<Object>singletonList(ExpandableImageViewAdapter.Payload.SCALABLE));
+
+        assertEquals(640, mViewHolder.itemView.getLayoutParams().width);
+        assertEquals(1, listener.mLoadCount);
+    }
+
+    @Test
+    public void releasedImage_isRestoredByImagePayload() {
+        CountingListener listener = new CountingListener();
+        mAdapter.setOnImageClickedListener(listener);
+        List<Object> imagePayload =
+                Collections.<Object>singletonList(ExpandableImageViewAdapter.Payload.IMAGE);
+
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+        mAdapter.onBindViewHolder(mViewHolder, 0, imagePayload);
+        assertEquals(1, listener.mLoadCount);
+
+        mAdapter.releaseImage(mViewHolder);
+        assertEquals(1, listener.mClearCount);
+
+        mAdapter.onBindViewHolder(mViewHolder, 0, imagePayload);
+        mAdapter.onBindViewHolder(mViewHolder, 0, imagePayload);
+        assertEquals(2, listener.mLoadCount);
+    }
+
+    @Test
+    public void recycle_clearsImage() {
+        CountingListener listener = new CountingListener();
+        mAdapter.setOnImageClickedListener(listener);
+
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+        mAdapter.onViewRecycled(mViewHolder);
+        assertEquals(1, listener.mClearCount);
+    }
+
+    @Test
+    public void metrics_countBindsAndRepeatedLoads() {
+        ExpandableImageViewMetrics metrics = new ExpandableImageViewMetrics();
+        mAdapter.setMetrics(metrics);
+        mAdapter.setOnImageClickedListener(new CountingListener());
+
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+        mAdapter.onBindViewHolder(mViewHolder, 0,
+                Collections.<Object>singletonList(ExpandableImageViewAdapter.Payload.SCALABLE));
+        mAdapter.onViewRecycled(mViewHolder);
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+        mAdapter.onBindViewHolder(mViewHolder, 1);
+
+        assertEquals(3, metrics.getFullBinds());
+        assertEquals(1, metrics.getPayloadBinds());
+        assertEquals(3, metrics.getImageLoads());
+        assertEquals(1, metrics.getSameUrlImageLoads());
+        assertEquals(1, metrics.getImageClears());
+    }
+
+    @Test
+    public void stableIds_surviveInsertsOfOtherItems() {
+        List<ExpandableImageViewPagerItem> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            items.add(ExpandableImageViewPagerItem.create("http://example.com/" + i + ".jpg"));
+        }
+        ExpandableImageViewAdapter adapter = new ExpandableImageViewAdapter(items);
+        adapter.setHasStableIds(true);
+        long[] oldIds = {adapter.getItemId(0), adapter.getItemId(1), adapter.getItemId(2)};
+
+        items.add(1, ExpandableImageViewPagerItem.create("http://example.com/new.jpg"));
+        adapter.onDataChanged();
+
+        assertEquals(oldIds[0], adapter.getItemId(0));
+        assertEquals(oldIds[1], adapter.getItemId(2));
+        assertEquals(oldIds[2], adapter.getItemId(3));
+        assertNotEquals(RecyclerView.NO_ID, adapter.getItemId(1));
+    }
+
+    @Test
+    public void stableIds_ofDuplicateUrlsAreUniqueAndKeptByItemId() {
+        String url = "http://example.com/duplicate.jpg";
+        List<ExpandableImageViewPagerItem> items = new ArrayList<>();
+        items.add(ExpandableImageViewPagerItem.create(url, null, "first"));
+        items.add(ExpandableImageViewPagerItem.create(url, null, "second"));
+        items.add(ExpandableImageViewPagerItem.create(url));
+        items.add(ExpandableImageViewPagerItem.create(url));
+        ExpandableImageViewAdapter adapter = new ExpandableImageViewAdapter(items);
+        adapter.setHasStableIds(true);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            ids.add(adapter.getItemId(i));
+        }
+        assertEquals(items.size(), ids.size());
+
+        // Items with an item id keep their ids when an earlier duplicate is inserted
+        long secondId = adapter.getItemId(1);
+        items.add(0, ExpandableImageViewPagerItem.create(url, null, "zeroth"));
+        adapter.onDataChanged();
+        assertEquals(secondId, adapter.getItemId(2));
+    }
+
+    @Test
+    public void bind_withSizedListener_passesTheTargetSize() {
+        SizedCountingListener listener = new SizedCountingListener();
+        mAdapter.setOnImageClickedListener(listener);
+
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+
+        assertEquals(1, listener.mRequests.size());
+        ImageRequest request = listener.mRequests.get(0);
+        assertEquals("http://example.com/0.jpg", request.imageUrl());
+        assertEquals(320 - mViewHolder.itemView.getPaddingLeft()
+                - mViewHolder.itemView.getPaddingRight(), request.targetWidth());
+    }
+
+    @Test
+    public void bitmapConfig_reachesSizedListenerLoads() {
+        SizedCountingListener listener = new SizedCountingListener();
+        mAdapter.setOnImageClickedListener(listener);
+        mAdapter.setBitmapConfig(Bitmap.Config.RGB_565);
+
+        mAdapter.onBindViewHolder(mViewHolder, 0);
+        mAdapter.setBitmapConfig(Bitmap.Config.ARGB_8888);
+        mAdapter.onBindViewHolder(mViewHolder, 1);
+
+        assertEquals(Bitmap.Config.RGB_565, listener.mRequests.get(0).bitmapConfig());
+        assertEquals(Bitmap.Config.ARGB_8888, listener.mRequests.get(1).bitmapConfig());
+    }
+
+    @Test
+    public void bind_doesNotAllocateAfterWarmUp() {
+        assertNoAllocationsWhileBinding();
+    }
+
+    @Test
+    public void bind_withListener_doesNotAllocateAfterWarmUp() {
+        mAdapter.setOnImageClickedListener(new CountingListener());
+        assertNoAllocationsWhileBinding();
+    }
+
+    private void assertNoAllocationsWhileBinding() {
+        Runnable bindAll = new Runnable() {
+            @Override
+            public void run() {
+                for (int position = 0; position < ITEM_COUNT; position++) {
+                    mAdapter.onBindViewHolder(mViewHolder, position);
+                }
+            }
+        };
+
+        for (int i = 0; i < WARM_UP_PASSES; i++) {
+            bindAll.run();
+        }
+
+        AllocationCounter counter = new AllocationCounter();
+        long allocatedBytes = 0;
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            allocatedBytes += counter.measure(bindAll);
+        }
+
+        assertEquals(0, allocatedBytes);
+    }
+
+    private static class CountingListener
+            implements ExpandableImageViewAdapter.OnImageClickedListener {
+
+        int mLoadCount;
+        int mClearCount;
+
+        @Override
+        public void onImageClicked(int position) {
+        }
+
+        @Override
+        public void onClearImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView) {
+            mClearCount++;
+        }
+
+        @Override
+        public void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
+                                                            String imageUrl,
+                                                            @Nullable Drawable placeholder) {
+            mLoadCount++;
+        }
+    }
+
+    private static class SizedCountingListener extends CountingListener
+            implements ExpandableImageViewAdapter.OnSizedImageClickedListener {
+
+        final List<ImageRequest> mRequests = new ArrayList<>();
+
+        @Override
+        public void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
+                                                            ImageRequest request,
+                                                            @Nullable Drawable placeholder) {
+            mLoadCount++;
+            mRequests.add(request);
+        }
+    }
+}
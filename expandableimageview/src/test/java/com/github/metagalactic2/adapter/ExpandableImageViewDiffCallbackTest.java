@@ -0,0 +1,102 @@
+package com.github.metagalactic2.adapter;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import com.github.metagalactic2.views.BuildConfig;
+import com.github.metagalactic2.views.ExpandableImageViewPagerItem;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ExpandableImageViewDiffCallbackTest {
+
+    private static final ExpandableImageViewPagerItem A = item("a", null, null);
+    private static final ExpandableImageViewPagerItem B = item("b", null, null);
+    private static final ExpandableImageViewPagerItem C = item("c", null, null);
+
+    @Test
+    public void move_dispatchesOnlyAMove() {
+        List<String> updates = diff(Arrays.asList(A, B, C), Arrays.asList(C, A, B));
+        assertEquals(Arrays.asList("move 2 0"), updates);
+    }
+
+    @Test
+    public void insert_dispatchesOnlyAnInsert() {
+        ExpandableImageViewPagerItem d = item("d", null, null);
+        List<String> updates = diff(Arrays.asList(A, B, C), Arrays.asList(A, d, B, C));
+        assertEquals(Arrays.asList("insert 1 1"), updates);
+    }
+
+    @Test
+    public void contentDescriptionChange_dispatchesOnlyAChange() {
+        List<String> updates = diff(Arrays.asList(A, B, C),
+                Arrays.asList(A, item("b", "Description", null), C));
+        assertEquals(Arrays.asList("change 1 1"), updates);
+    }
+
+    @Test
+    public void duplicateUrls_areMatchedByItemId() {
+        ExpandableImageViewPagerItem first = item("a", null, "1");
+        ExpandableImageViewPagerItem second = item("a", null, "2");
+
+        assertTrue(ExpandableImageViewDiffCallback.isSameItem(first, item("a", "Changed", "1")));
+        assertFalse(ExpandableImageViewDiffCallback.isSameItem(first, second));
+        assertFalse(ExpandableImageViewDiffCallback.isSameItem(first, A));
+
+        // Removing the first of two items sharing a URL must not be mistaken for removing the last
+        List<String> updates = diff(Arrays.asList(first, second, B), Arrays.asList(second, B));
+        assertEquals(Arrays.asList("remove 0 1"), updates);
+    }
+
+    private static List<String> diff(List<ExpandableImageViewPagerItem> oldItems,
+                                     List<ExpandableImageViewPagerItem> newItems) {
+        RecordingCallback callback = new RecordingCallback();
+        DiffUtil.calculateDiff(new ExpandableImageViewDiffCallback(oldItems, newItems), true)
+                .dispatchUpdatesTo(callback);
+        return callback.mUpdates;
+    }
+
+    private static ExpandableImageViewPagerItem item(String name, String description,
+                                                     String itemId) {
+        return ExpandableImageViewPagerItem.create("http://example.com/" + name + ".jpg",
+                description, itemId);
+    }
+
+    private static class RecordingCallback implements ListUpdateCallback {
+
+        final List<String> mUpdates = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            mUpdates.add("insert " + position + " " + count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mUpdates.add("remove " + position + " " + count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mUpdates.add("move " + fromPosition + " " + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            mUpdates.add("change " + position + " " + count);
+        }
+    }
+}
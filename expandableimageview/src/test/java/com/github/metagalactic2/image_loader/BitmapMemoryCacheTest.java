@@ -0,0 +1,72 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+
+import com.github.metagalactic2.views.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class BitmapMemoryCacheTest {
+
+    // 10x10 ARGB_8888 bitmaps
+    private static final int BITMAP_SIZE = 400;
+
+    private static final ImageRequest REQUEST_A = ImageRequest.create("a", 10, 10);
+    private static final ImageRequest REQUEST_B = ImageRequest.create("b", 10, 10);
+    private static final ImageRequest REQUEST_C = ImageRequest.create("c", 10, 10);
+
+    @Test
+    public void duplicateRequests_shareOneBitmap() {
+        BitmapMemoryCache cache = new BitmapMemoryCache(BITMAP_SIZE * 2);
+        Bitmap bitmap = cache.putAndAcquire(REQUEST_A, newBitmap());
+
+        assertSame(bitmap, cache.acquire(REQUEST_A));
+        assertNull(cache.acquire(REQUEST_B));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void unreferencedEntries_areEvictedLeastRecentlyUsedFirst() {
+        BitmapMemoryCache cache = new BitmapMemoryCache(BITMAP_SIZE * 2);
+        cache.putAndAcquire(REQUEST_A, newBitmap());
+        cache.putAndAcquire(REQUEST_B, newBitmap());
+        cache.release(REQUEST_A);
+        cache.release(REQUEST_B);
+
+        cache.putAndAcquire(REQUEST_C, newBitmap());
+
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.acquire(REQUEST_A));
+        assertNotNull(cache.acquire(REQUEST_B));
+        assertEquals(BITMAP_SIZE * 2, cache.getSize());
+    }
+
+    @Test
+    public void referencedEntries_areNotEvicted() {
+        BitmapMemoryCache cache = new BitmapMemoryCache(BITMAP_SIZE);
+        cache.putAndAcquire(REQUEST_A, newBitmap());
+        cache.putAndAcquire(REQUEST_B, newBitmap());
+
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(2, cache.getEntryCount());
+
+        cache.release(REQUEST_A);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    private static Bitmap newBitmap() {
+        return Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+
+import com.github.metagalactic2.views.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class BitmapPoolTest {
+
+    // 10x10 ARGB_8888 bitmaps
+    private static final int BITMAP_SIZE = 400;
+
+    @Test
+    public void get_returnsBitmapOfMatchingSizeAndConfig() {
+        BitmapPool pool = new BitmapPool(BITMAP_SIZE * 4);
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        pool.put(bitmap);
+
+        assertNull(pool.get(10, 10, Bitmap.Config.RGB_565));
+        assertNull(pool.get(20, 10, Bitmap.Config.ARGB_8888));
+        assertSame(bitmap, pool.get(10, 10, Bitmap.Config.ARGB_8888));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    public void put_overMaxSize_dropsOldestBitmaps() {
+        BitmapPool pool = new BitmapPool(BITMAP_SIZE * 2);
+        Bitmap oldest = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        pool.put(oldest);
+        pool.put(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+        pool.put(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+
+        assertEquals(1, pool.getEvictionCount());
+        assertEquals(2, pool.getBitmapCount());
+        assertEquals(BITMAP_SIZE * 2, pool.getSize());
+    }
+
+    @Test
+    public void sampleSize_keepsImageAtLeastTargetSize() {
+        assertEquals(1, BitmapDecoder.getSampleSize(1000, 1000, 0, 0));
+        assertEquals(1, BitmapDecoder.getSampleSize(1000, 1000, 600, 600));
+        assertEquals(2, BitmapDecoder.getSampleSize(1000, 1000, 500, 500));
+        assertEquals(4, BitmapDecoder.getSampleSize(1000, 1000, 200, 0));
+    }
+}
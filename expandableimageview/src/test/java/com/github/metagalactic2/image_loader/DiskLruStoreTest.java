@@ -0,0 +1,106 @@
+package com.github.metagalactic2.image_loader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskLruStoreTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void put_thenGet_returnsValue() throws IOException {
+        DiskLruStore store = new DiskLruStore(mTemporaryFolder.getRoot(), 100);
+        store.put("a", new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, store.get("a"));
+        assertNull(store.get("b"));
+        assertEquals(3, store.getSize());
+    }
+
+    @Test
+    public void put_overMaxSize_evictsLeastRecentlyUsed() throws IOException {
+        DiskLruStore store = new DiskLruStore(mTemporaryFolder.getRoot(), 10);
+        store.put("a", new byte[4]);
+        store.put("b", new byte[4]);
+        store.get("a");
+
+        store.put("c", new byte[4]);
+
+        assertTrue(store.contains("a"));
+        assertFalse(store.contains("b"));
+        assertTrue(store.contains("c"));
+        assertEquals(8, store.getSize());
+    }
+
+    @Test
+    public void index_survivesReopening() throws IOException {
+        File directory = mTemporaryFolder.getRoot();
+        DiskLruStore store = new DiskLruStore(directory, 10);
+        store.put("a", new byte[]{1});
+        store.put("b", new byte[]{2});
+        store.get("a");
+        store.flush();
+
+        DiskLruStore reopened = new DiskLruStore(directory, 10);
+        assertArrayEquals(new byte[]{1}, reopened.get("a"));
+        assertArrayEquals(new byte[]{2}, reopened.get("b"));
+        assertEquals(2, reopened.getSize());
+    }
+
+    @Test
+    public void removalsAndAccessOrder_surviveReopening() throws IOException {
+        File directory = mTemporaryFolder.getRoot();
+        DiskLruStore store = new DiskLruStore(directory, 8);
+        store.put("a", new byte[4]);
+        store.put("b", new byte[4]);
+        store.get("a");
+        store.flush();
+
+        DiskLruStore reopened = new DiskLruStore(directory, 8);
+        reopened.put("c", new byte[4]);
+        assertTrue(reopened.contains("a"));
+        assertFalse(reopened.contains("b"));
+
+        reopened.remove("a");
+        assertFalse(new DiskLruStore(directory, 8).contains("a"));
+    }
+
+    @Test
+    public void journal_isCompacted() throws IOException {
+        File directory = mTemporaryFolder.getRoot();
+        DiskLruStore store = new DiskLruStore(directory, 100);
+        for (int i = 0; i < 10000; i++) {
+            store.put("key" + (i % 10), new byte[5]);
+        }
+
+        // Far less than a line per put
+        assertTrue(new File(directory, "journal").length() < 10000 * 10);
+
+        DiskLruStore reopened = new DiskLruStore(directory, 100);
+        assertEquals(10, reopened.getEntryCount());
+        assertEquals(50, reopened.getSize());
+    }
+
+    @Test
+    public void reopening_deletesUnknownFiles() throws IOException {
+        File directory = mTemporaryFolder.getRoot();
+        new DiskLruStore(directory, 10).put("a", new byte[]{1});
+        File orphan = new File(directory, "12345.bin");
+        assertTrue(orphan.createNewFile());
+
+        new DiskLruStore(directory, 10);
+
+        assertFalse(orphan.exists());
+    }
+}
@@ -0,0 +1,269 @@
+package com.github.metagalactic2.image_loader;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.widget.ImageView;
+
+import com.github.metagalactic2.views.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ImagePipelineTest {
+
+    private static final ImageRequest REQUEST_A = ImageRequest.create("http://example.com/a.jpg",
+            100, 100);
+    private static final ImageRequest REQUEST_B = ImageRequest.create("http://example.com/b.jpg",
+            100, 100);
+
+    // Upper bound for work on the disk thread to finish
+    private static final long MAX_WAIT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private FakeImageLoader mImageLoader;
+    private ImagePipeline mPipeline;
+    private List<ImageRequest> mCompletedRequests;
+
+    @Before
+    public void setUp() {
+        mImageLoader = new FakeImageLoader();
+        mPipeline = new ImagePipeline(mImageLoader);
+        mCompletedRequests = new ArrayList<>();
+        mPipeline.setOnRequestCompleteListener(new ImagePipeline.OnRequestCompleteListener() {
+            @Override
+            public void onRequestComplete(ImageRequest request, boolean success) {
+                mCompletedRequests.add(request);
+            }
+        });
+    }
+
+    @Test
+    public void identicalRequests_shareOneLoad() {
+        ImageView first = newImageView();
+        ImageView second = newImageView();
+
+        mPipeline.load(first, REQUEST_A, null);
+        mPipeline.load(second, REQUEST_A, null);
+        assertEquals(1, mImageLoader.mLoads.size());
+
+        mImageLoader.mLoads.get(0).complete();
+        assertTrue(first.getDrawable() != null);
+        assertTrue(second.getDrawable() != null);
+        assertEquals(1, mCompletedRequests.size());
+    }
+
+    @Test
+    public void clearingLastTarget_cancelsLoad() {
+        ImageView first = newImageView();
+        ImageView second = newImageView();
+        mPipeline.load(first, REQUEST_A, null);
+        mPipeline.load(second, REQUEST_A, null);
+
+        mPipeline.clear(first);
+        assertFalse(mImageLoader.mLoads.get(0).mIsCancelled);
+
+        mPipeline.clear(second);
+        assertTrue(mImageLoader.mLoads.get(0).mIsCancelled);
+        assertEquals(0, mPipeline.getInFlightRequestCount());
+    }
+
+    @Test
+    public void reboundTarget_ignoresStaleResult() {
+        ImageView target = newImageView();
+        mPipeline.load(target, REQUEST_A, null);
+        mPipeline.load(target, REQUEST_B, null);
+
+        FakeLoad staleLoad = mImageLoader.mLoads.get(0);
+        assertTrue(staleLoad.mIsCancelled);
+        staleLoad.complete();
+        assertNull(target.getDrawable());
+        assertTrue(mCompletedRequests.isEmpty());
+
+        mImageLoader.mLoads.get(1).complete();
+        assertTrue(target.getDrawable() != null);
+        assertEquals(REQUEST_B, mCompletedRequests.get(0));
+    }
+
+    @Test
+    public void reload_keepsCurrentImageUntilReady() {
+        ImageView target = newImageView();
+        mPipeline.load(target, REQUEST_A, null);
+        mImageLoader.mLoads.get(0).complete();
+        Drawable lowResolution = target.getDrawable();
+
+        mPipeline.reload(target, ImageRequest.create(REQUEST_A.imageUrl(), 400, 400));
+        assertSame(lowResolution, target.getDrawable());
+
+        mImageLoader.mLoads.get(1).complete();
+        assertNotSame(lowResolution, target.getDrawable());
+    }
+
+    @Test
+    public void repeatedLoad_isIgnored() {
+        ImageView target = newImageView();
+        mPipeline.load(target, REQUEST_A, null);
+        mImageLoader.mLoads.get(0).complete();
+
+        mPipeline.load(target, REQUEST_A, null);
+        assertEquals(1, mImageLoader.mLoads.size());
+    }
+
+    @Test
+    public void prefetchedImage_isServedFromMemoryCache() {
+        BitmapMemoryCache memoryCache = new BitmapMemoryCache(1024 * 1024);
+        ImagePipeline pipeline = new ImagePipeline(mImageLoader, memoryCache);
+        assertTrue(pipeline.prefetch(REQUEST_A));
+        assertFalse(pipeline.prefetch(REQUEST_A));
+
+        mImageLoader.mLoads.get(0).complete();
+        assertTrue(memoryCache.contains(REQUEST_A));
+
+        ImageView target = newImageView();
+        pipeline.load(target, REQUEST_A, null);
+        assertEquals(1, mImageLoader.mLoads.size());
+        assertTrue(target.getDrawable() != null);
+    }
+
+    @Test
+    public void cancelPrefetch_keepsLoadWithTargets() {
+        ImagePipeline pipeline = new ImagePipeline(mImageLoader, new BitmapMemoryCache(1024 * 1024));
+        pipeline.prefetch(REQUEST_A);
+        pipeline.prefetch(REQUEST_B);
+        ImageView target = newImageView();
+        pipeline.load(target, REQUEST_A, null);
+
+        pipeline.cancelPrefetch(REQUEST_A);
+        pipeline.cancelPrefetch(REQUEST_B);
+        assertFalse(mImageLoader.mLoads.get(0).mIsCancelled);
+        assertTrue(mImageLoader.mLoads.get(1).mIsCancelled);
+        assertEquals(1, pipeline.getInFlightRequestCount());
+    }
+
+    @Test
+    public void bitmapBeingWrittenToDisk_isNotPooled() throws Exception {
+        BitmapPool bitmapPool = new BitmapPool(1024 * 1024);
+        BitmapMemoryCache memoryCache = new BitmapMemoryCache(1024 * 1024);
+        memoryCache.setBitmapPool(bitmapPool);
+        ImagePipeline pipeline = new ImagePipeline(mImageLoader, memoryCache);
+        BlockingDiskImageCache diskCache = new BlockingDiskImageCache(
+                new DiskLruStore(mTemporaryFolder.getRoot(), 1024 * 1024));
+        pipeline.setDiskCache(diskCache);
+
+        ImageView target = newImageView();
+        pipeline.load(target, REQUEST_A, null);
+        // The disk cache is checked first, then the loader is asked on the main thread
+        long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+        while (mImageLoader.mLoads.isEmpty() && System.currentTimeMillis() < deadline) {
+            ShadowLooper.idleMainLooper();
+            Thread.yield();
+        }
+        mImageLoader.mLoads.get(0).complete();
+        assertTrue(diskCache.mPutStarted.await(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS));
+
+        // Nothing shows the image anymore, but it must stay out of the pool until it is written
+        pipeline.clear(target);
+        memoryCache.evictAll();
+        assertTrue(memoryCache.contains(REQUEST_A));
+        assertEquals(0, bitmapPool.getBitmapCount());
+
+        diskCache.mAllowPut.countDown();
+        deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+        while (memoryCache.contains(REQUEST_A) && System.currentTimeMillis() < deadline) {
+            ShadowLooper.idleMainLooper();
+            memoryCache.evictAll();
+            Thread.yield();
+        }
+        assertFalse(memoryCache.contains(REQUEST_A));
+        assertEquals(1, bitmapPool.getBitmapCount());
+    }
+
+    private static ImageView newImageView() {
+        return new ImageView(RuntimeEnvironment.application);
+    }
+
+    /**
+     * Never has anything stored, and holds every write until allowed to go on
+     */
+    private static class BlockingDiskImageCache extends DiskImageCache {
+
+        final CountDownLatch mPutStarted = new CountDownLatch(1);
+        final CountDownLatch mAllowPut = new CountDownLatch(1);
+
+        BlockingDiskImageCache(DiskLruStore store) {
+            super(store);
+        }
+
+        @Nullable
+        @Override
+        public Bitmap get(@NonNull ImageRequest request, @Nullable BitmapPool pool) {
+            return null;
+        }
+
+        @Override
+        public void put(@NonNull ImageRequest request, @NonNull Bitmap bitmap) {
+            mPutStarted.countDown();
+            try {
+                mAllowPut.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class FakeImageLoader implements ImageLoader {
+
+        final List<FakeLoad> mLoads = new ArrayList<>();
+
+        @NonNull
+        @Override
+        public Request load(@NonNull ImageRequest request, @NonNull Callback callback) {
+            FakeLoad load = new FakeLoad(callback);
+            mLoads.add(load);
+            return load;
+        }
+    }
+
+    private static class FakeLoad implements ImageLoader.Request {
+
+        final ImageLoader.Callback mCallback;
+        boolean mIsCancelled;
+
+        FakeLoad(ImageLoader.Callback callback) {
+            mCallback = callback;
+        }
+
+        void complete() {
+            mCallback.onSuccess(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+        }
+
+        @Override
+        public void cancel() {
+            mIsCancelled = true;
+        }
+    }
+}
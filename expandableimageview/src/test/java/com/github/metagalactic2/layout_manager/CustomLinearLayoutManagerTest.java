@@ -0,0 +1,158 @@
+package com.github.metagalactic2.layout_manager;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.github.metagalactic2.views.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CustomLinearLayoutManagerTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 200;
+    private static final int ITEM_WIDTH = 120;
+    private static final int ITEM_COUNT = 20;
+
+    private StateCapturingLayoutManager mLayoutManager;
+    private RecyclerView mRecyclerView;
+
+    @Before
+    public void setUp() {
+        mLayoutManager = new StateCapturingLayoutManager();
+        // Only lay out the visible items, so that prefetching starts right past them
+        mLayoutManager.setNumberOfItemsToEagerLoad(0);
+
+        mRecyclerView = new RecyclerView(RuntimeEnvironment.application);
+        mRecyclerView.setLayoutManager(mLayoutManager);
+        mRecyclerView.setAdapter(new FixedWidthAdapter(ITEM_COUNT));
+        layOut();
+    }
+
+    @Test
+    public void extraLayoutSpace_inItems_usesTheCurrentItemSize() {
+        mLayoutManager.setNumberOfItemsToEagerLoad(3);
+        assertEquals(3 * ITEM_WIDTH, mLayoutManager.getExtraLayoutSpace(mLayoutManager.mState));
+    }
+
+    @Test
+    public void extraLayoutSpace_inItems_withoutItems_usesTheListSize() {
+        mRecyclerView.setAdapter(new FixedWidthAdapter(0));
+        layOut();
+
+        mLayoutManager.setNumberOfItemsToEagerLoad(3);
+        assertEquals(3 * WIDTH, mLayoutManager.getExtraLayoutSpace(mLayoutManager.mState));
+    }
+
+    @Test
+    public void extraLayoutSpace_inScreens_usesTheListSize() {
+        mLayoutManager.setNumberOfScreensToEagerLoad(2);
+        assertEquals(-1, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(2 * WIDTH, mLayoutManager.getExtraLayoutSpace(mLayoutManager.mState));
+    }
+
+    @Test
+    public void initialPrefetch_coversTheFirstPage() {
+        // Four items of 30% of the width are at least partially visible
+        mLayoutManager.setPrefetchConfiguration(2, 0.3f);
+        assertEquals(4, mLayoutManager.getInitialItemPrefetchCount());
+
+        // A page is larger than what is visible
+        mLayoutManager.setPrefetchConfiguration(3, 0.5f);
+        assertEquals(3, mLayoutManager.getInitialItemPrefetchCount());
+    }
+
+    @Test
+    public void adjacentPrefetch_coversTheNextPage() {
+        mLayoutManager.setPrefetchConfiguration(3, 0.25f);
+
+        assertEquals(Arrays.asList("4@0", "5@120", "6@240"), collectPrefetchPositions(10));
+
+        // Nothing lies before the first item
+        assertEquals(new ArrayList<String>(), collectPrefetchPositions(-10));
+    }
+
+    @Test
+    public void adjacentPrefetch_withSingleItemPages_onlyPrefetchesTheAdjacentItem() {
+        mLayoutManager.setPrefetchConfiguration(1, 0.25f);
+
+        assertEquals(Arrays.asList("4@0"), collectPrefetchPositions(10));
+    }
+
+    private List<String> collectPrefetchPositions(int dx) {
+        final List<String> positions = new ArrayList<>();
+        mLayoutManager.collectAdjacentPrefetchPositions(dx, 0, mLayoutManager.mState,
+                new RecyclerView.LayoutManager.LayoutPrefetchRegistry() {
+                    @Override
+                    public void addPosition(int layoutPosition, int pixelDistance) {
+                        positions.add(layoutPosition + "@" + pixelDistance);
+                    }
+                });
+        return positions;
+    }
+
+    private void layOut() {
+        mRecyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mRecyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Keeps the state of the last layout, which prefetching needs for the item count
+     */
+    private static class StateCapturingLayoutManager extends CustomLinearLayoutManager {
+
+        RecyclerView.State mState;
+
+        StateCapturingLayoutManager() {
+            super(RuntimeEnvironment.application);
+        }
+
+        @Override
+        public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+            mState = state;
+            super.onLayoutChildren(recycler, state);
+        }
+    }
+
+    private static class FixedWidthAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        private final int mItemCount;
+
+        FixedWidthAdapter(int itemCount) {
+            mItemCount = itemCount;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new View(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(ITEM_WIDTH,
+                    ViewGroup.LayoutParams.MATCH_PARENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItemCount;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.metagalactic2.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExpandableImageViewMetricsTest {
+
+    private ExpandableImageViewMetrics mMetrics;
+
+    @Before
+    public void setUp() {
+        mMetrics = new ExpandableImageViewMetrics();
+    }
+
+    @Test
+    public void heroTime_isMeasuredUntilFirstImageAtPositionZero() {
+        mMetrics.onHeroImageRequested(1000);
+        mMetrics.onImageShown(1, 1100, false);
+        mMetrics.onImageShown(0, 1250, true);
+        mMetrics.onImageShown(0, 1400, true);
+
+        TimingHistogram heroTimes = mMetrics.getHeroTimesToFirstImage();
+        assertEquals(1, heroTimes.getCount());
+        assertEquals(250, heroTimes.getMaxMillis());
+        assertEquals(3, mMetrics.getImagesShown());
+        assertEquals(2, mMetrics.getMemoryCacheHits());
+    }
+
+    @Test
+    public void cancelledHeroTime_isNotRecorded() {
+        mMetrics.onHeroImageRequested(1000);
+        mMetrics.cancelHeroImage();
+        mMetrics.onImageShown(0, 1250, false);
+
+        assertEquals(0, mMetrics.getHeroTimesToFirstImage().getCount());
+    }
+
+    @Test
+    public void snapshot_isNotAffectedByLaterRecordingOrReset() {
+        mMetrics.onFullBind();
+        mMetrics.onImageLoad(false);
+        mMetrics.onImageLoad(true);
+        mMetrics.onImageLoadTime(40);
+
+        ExpandableImageViewMetrics snapshot = mMetrics.snapshot();
+        mMetrics.onFullBind();
+        mMetrics.reset();
+
+        assertEquals(1, snapshot.getFullBinds());
+        assertEquals(2, snapshot.getImageLoads());
+        assertEquals(1, snapshot.getSameUrlImageLoads());
+        assertEquals(1, snapshot.getImageLoadTimes().getCount());
+        assertEquals(0, mMetrics.getFullBinds());
+        assertEquals(0, mMetrics.getImageLoadTimes().getCount());
+    }
+
+    @Test
+    public void histogramPercentile_isBucketUpperBoundCappedAtMax() {
+        TimingHistogram histogram = new TimingHistogram();
+        for (int i = 0; i < 19; i++) {
+            histogram.record(10);
+        }
+        histogram.record(300);
+
+        assertEquals(16, histogram.getPercentileMillis(0.95f));
+        assertEquals(300, histogram.getPercentileMillis(1f));
+        assertEquals(24, histogram.getMeanMillis());
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.metagalactic2.metrics;
+
+import android.support.annotation.NonNull;
+
+import com.github.metagalactic2.test_utils.AllocationCounter;
+import com.github.metagalactic2.views.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FrameMetricsCollectorTest {
+
+    private static final long MILLISECOND = 1000000L;
+    private static final long FRAME = 16 * MILLISECOND;
+
+    private FrameMetricsCollector mCollector;
+    private List<String> mReports;
+
+    @Before
+    public void setUp() {
+        mCollector = new FrameMetricsCollector();
+        mReports = new ArrayList<>();
+    }
+
+    @Test
+    public void finishedPhase_reportsFrameTimings() {
+        mCollector.setListener(new RecordingListener());
+        mCollector.beginPhase(InteractionPhase.EXPAND);
+
+        long time = 1000 * MILLISECOND;
+        mCollector.onFrame(time);
+        for (int i = 0; i < 19; i++) {
+            time += FRAME;
+            mCollector.onFrame(time);
+        }
+        time += 50 * MILLISECOND;
+        mCollector.onFrame(time);
+        mCollector.endPhase();
+
+        assertEquals(1, mReports.size());
+        assertEquals("EXPAND frames=20 slow=1 worst=50 p95=17", mReports.get(0));
+        assertNull(mCollector.getPhase());
+    }
+
+    @Test
+    public void newPhase_reportsPreviousOne() {
+        mCollector.setListener(new RecordingListener());
+        mCollector.beginPhase(InteractionPhase.DRAG);
+        mCollector.onFrame(0);
+        mCollector.onFrame(FRAME);
+
+        mCollector.beginPhase(InteractionPhase.SETTLE);
+        assertEquals(1, mReports.size());
+        assertEquals(InteractionPhase.SETTLE, mCollector.getPhase());
+    }
+
+    @Test
+    public void withoutListener_nothingIsMeasuredOrAllocated() {
+        Runnable interaction = new Runnable() {
+            @Override
+            public void run() {
+                mCollector.beginPhase(InteractionPhase.SETTLE);
+                for (int i = 0; i < 30; i++) {
+                    mCollector.onFrame(i * FRAME);
+                }
+                mCollector.endPhase();
+            }
+        };
+        interaction.run();
+
+        assertEquals(0, new AllocationCounter().measure(interaction));
+        assertNull(mCollector.getPhase());
+    }
+
+    private class RecordingListener implements FrameMetricsCollector.OnFrameMetricsListener {
+
+        @Override
+        public void onInteractionFrameMetrics(@NonNull InteractionFrameMetrics metrics) {
+            mReports.add(metrics.getPhase()
+                    + " frames=" + metrics.getFrameCount()
+                    + " slow=" + metrics.getSlowFrameCount()
+                    + " worst=" + metrics.getWorstFrameNanos() / MILLISECOND
+                    + " p95=" + metrics.getPercentile95FrameNanos() / MILLISECOND);
+        }
+    }
+}
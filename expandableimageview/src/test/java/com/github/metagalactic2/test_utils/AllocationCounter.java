@@ -0,0 +1,43 @@
+package com.github.metagalactic2.test_utils;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the number of bytes allocated by the current thread. This relies on the HotSpot
+ * specific {@link com.sun.management.ThreadMXBean} and is only meant to be used from JVM tests.
+ */
+public final class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean mThreadMXBean;
+    private final long mThreadId;
+    private final long mMeasurementOverhead;
+
+    public AllocationCounter() {
+        mThreadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        mThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        mThreadId = Thread.currentThread().getId();
+
+        // Reading the counter can itself allocate, so measure how much a back to back read costs
+        // and subtract it from every measurement
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - start);
+        }
+        mMeasurementOverhead = overhead;
+    }
+
+    /**
+     * @param runnable the work to measure
+     * @return the number of bytes allocated on the current thread while running the given work
+     */
+    public long measure(Runnable runnable) {
+        long start = allocatedBytes();
+        runnable.run();
+        return Math.max(0, allocatedBytes() - start - mMeasurementOverhead);
+    }
+
+    private long allocatedBytes() {
+        return mThreadMXBean.getThreadAllocatedBytes(mThreadId);
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.metagalactic2.test_utils;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads RecyclerView state that is not exposed through its API. This depends on the field names of
+ * the support library version in use and is only meant to be used from tests.
+ */
+public final class RecyclerViewInternals {
+
+    private RecyclerViewInternals() {
+    }
+
+    /**
+     * @param recyclerView the view to inspect
+     * @return the maximum number of views its recycler keeps in the item view cache
+     */
+    public static int getItemViewCacheSize(RecyclerView recyclerView) {
+        try {
+            Field recyclerField = RecyclerView.class.getDeclaredField("mRecycler");
+            recyclerField.setAccessible(true);
+            Object recycler = recyclerField.get(recyclerView);
+
+            Field cacheSizeField = RecyclerView.Recycler.class.getDeclaredField("mViewCacheMax");
+            cacheSizeField.setAccessible(true);
+            return cacheSizeField.getInt(recycler);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
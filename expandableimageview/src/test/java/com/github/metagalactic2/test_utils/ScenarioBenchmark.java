@@ -0,0 +1,8 @@
+package com.github.metagalactic2.test_utils;
+
+/**
+ * JUnit category of the slow scenario benchmarks. These are excluded from the regular unit tests
+ * and only run when the {@code scenarioBenchmarks} Gradle property is set.
+ */
+public interface ScenarioBenchmark {
+}
@@ -0,0 +1,82 @@
+package com.github.metagalactic2.views;
+
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+
+import com.github.metagalactic.views.ScalableImageView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that touching down while a snap is still settling hands the scroll over to the finger
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CaughtSnapTest {
+
+    private static final int ITEM_COUNT = 20;
+
+    // Frames into a snap at which it is caught, well within the paging animation time
+    private static final int CAUGHT_SNAP_FRAMES = 5;
+
+    private GalleryFixture mFixture;
+    private ExpandableImageView mView;
+    private final List<Integer> mSelectedPositions = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mFixture = new GalleryFixture();
+        mView = mFixture.getView();
+        mView.setListener(new SelectionListener());
+        mFixture.setItems(ITEM_COUNT);
+        mFixture.show();
+    }
+
+    @Test
+    public void actionDownWhileSettling_startsDragging() {
+        mView.snapToPosition(-4000f, true);
+        mFixture.advanceFrames(CAUGHT_SNAP_FRAMES);
+        assertEquals(ExpandableImageView.SCROLL_STATE_SETTLING, mView.getScrollState());
+        mSelectedPositions.clear();
+
+        mFixture.touchDown();
+        assertEquals(ExpandableImageView.SCROLL_STATE_DRAGGING, mView.getScrollState());
+
+        // The caught snap never selects its target, even once the scroll stops
+        mView.stopScroll();
+        mFixture.settle();
+        assertEquals(new ArrayList<Integer>(), mSelectedPositions);
+    }
+
+    private class SelectionListener implements ExpandableImageView.OnImageEventListener {
+
+        @Override
+        public void onImageClicked(int position) {
+        }
+
+        @Override
+        public void onImagesSelected(int firstPosition, int numberOfItems) {
+            mSelectedPositions.add(firstPosition);
+        }
+
+        @Override
+        public void onClearImageFromYourFavoriteImageLibrary(
+                ScalableImageView scalableImageView) {
+        }
+
+        @Override
+        public void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
+                                                            String imageUrl,
+                                                            @Nullable Drawable placeholder) {
+        }
+    }
+}
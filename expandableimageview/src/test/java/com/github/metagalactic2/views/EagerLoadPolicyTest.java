@@ -0,0 +1,105 @@
+package com.github.metagalactic2.views;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import com.github.metagalactic2.layout_manager.CustomLinearLayoutManager;
+import com.github.metagalactic2.test_utils.RecyclerViewInternals;
+import com.github.metagalactic2.views.ExpandableImageView.MemoryDegradation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class EagerLoadPolicyTest {
+
+    private static final int ITEMS_AHEAD = 3;
+    private static final int ITEMS_BEHIND = 4;
+
+    private ExpandableImageView mView;
+    private CustomLinearLayoutManager mLayoutManager;
+    private RecordingPolicy mPolicy;
+
+    @Before
+    public void setUp() {
+        mView = new ExpandableImageView(RuntimeEnvironment.application);
+        mLayoutManager = (CustomLinearLayoutManager) mView.getLayoutManager();
+        mPolicy = new RecordingPolicy(ITEMS_AHEAD, ITEMS_BEHIND);
+        mView.setEagerLoadPolicy(mPolicy);
+    }
+
+    @Test
+    public void policy_decidesTheItemsAheadAndBehind() {
+        assertEquals(ITEMS_AHEAD, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(ITEMS_BEHIND, RecyclerViewInternals.getItemViewCacheSize(mView));
+    }
+
+    @Test
+    public void policy_isGivenTheMemoryClass() {
+        ActivityManager activityManager = (ActivityManager) RuntimeEnvironment.application
+                .getSystemService(Context.ACTIVITY_SERVICE);
+        assertEquals(activityManager.getMemoryClass(), mPolicy.mMemoryClass);
+    }
+
+    @Test
+    public void explicitItemViewCacheSize_overridesTheItemsBehind() {
+        mView.setItemViewCacheSize(1);
+        mView.setEagerLoadPolicy(new RecordingPolicy(ITEMS_AHEAD, ITEMS_BEHIND + 1));
+
+        assertEquals(ITEMS_AHEAD, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(1, RecyclerViewInternals.getItemViewCacheSize(mView));
+    }
+
+    @Test
+    public void negativeValues_areIgnored() {
+        mView.setEagerLoadPolicy(new RecordingPolicy(-1, -1));
+
+        assertEquals(0, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(0, RecyclerViewInternals.getItemViewCacheSize(mView));
+    }
+
+    @Test
+    public void memoryDegradation_overridesThePolicy() {
+        mView.setMemoryDegradation(MemoryDegradation.NO_EAGER_LOADING);
+        assertEquals(0, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(ITEMS_BEHIND, RecyclerViewInternals.getItemViewCacheSize(mView));
+
+        mView.setMemoryDegradation(MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES);
+        assertEquals(0, RecyclerViewInternals.getItemViewCacheSize(mView));
+
+        mView.restoreFromMemoryPressure();
+        assertEquals(ITEMS_AHEAD, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(ITEMS_BEHIND, RecyclerViewInternals.getItemViewCacheSize(mView));
+    }
+
+    private static class RecordingPolicy implements ExpandableImageView.EagerLoadPolicy {
+
+        private final int mItemsAhead;
+        private final int mItemsBehind;
+        int mMemoryClass = -1;
+
+        RecordingPolicy(int itemsAhead, int itemsBehind) {
+            mItemsAhead = itemsAhead;
+            mItemsBehind = itemsBehind;
+        }
+
+        @Override
+        public int getItemsAhead(int itemsPerPage, int memoryClass) {
+            mMemoryClass = memoryClass;
+            return mItemsAhead;
+        }
+
+        @Override
+        public int getItemsBehind(int itemsPerPage, int memoryClass) {
+            mMemoryClass = memoryClass;
+            return mItemsBehind;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.metagalactic2.views;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.github.metagalactic2.test_utils.AllocationCounter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ExpandAnimationAllocationTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT_MIN = 200;
+    private static final int HEIGHT_MAX = 400;
+
+    // Roughly the number of frames in the 300ms animation
+    private static final int FRAMES = 18;
+    private static final int WARM_UP_PASSES = 5;
+
+    private ExpandableImageView mView;
+    private Runnable mAnimationFrames;
+
+    @Before
+    public void setUp() {
+        mView = new ExpandableImageView(RuntimeEnvironment.application);
+        mView.setLayoutParams(new ViewGroup.LayoutParams(WIDTH, HEIGHT_MIN));
+        mView.setPagerHeightMin(HEIGHT_MIN);
+        mView.setPagingHeightMax(HEIGHT_MAX);
+        mView.setCollapsedNumberOfItemsPerPage(2);
+
+        List<ExpandableImageViewPagerItem> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(ExpandableImageViewPagerItem.create("http://example.com/" + i + ".jpg",
+                    null));
+        }
+        mView.setImageUrls(items);
+
+        // Every frame of the animation is followed by the measure and layout pass it requests
+        mAnimationFrames = new Runnable() {
+            @Override
+            public void run() {
+                for (int frame = 0; frame <= FRAMES; frame++) {
+                    mView.applyLayoutAnimationFrame(frame / (float) FRAMES);
+                    measureAndLayOut();
+                }
+            }
+        };
+    }
+
+    @Test
+    public void expandAndCollapseFrames_doNotAllocate() {
+        mView.setCollapsed(true);
+        layOut();
+        mView.prepareLayoutAnimation(0);
+        long expandBytes = measureFrames();
+
+        mView.setCollapsed(false);
+        layOut();
+        mView.prepareLayoutAnimation(0);
+        long collapseBytes = measureFrames();
+
+        assertEquals(0, expandBytes);
+        assertEquals(0, collapseBytes);
+    }
+
+    private long measureFrames() {
+        for (int i = 0; i < WARM_UP_PASSES; i++) {
+            mAnimationFrames.run();
+        }
+        return new AllocationCounter().measure(mAnimationFrames);
+    }
+
+    private void layOut() {
+        mView.refresh();
+        measureAndLayOut();
+    }
+
+    private void measureAndLayOut() {
+        int height = mView.getLayoutParams().height;
+        mView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, WIDTH, height);
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.metagalactic2.views;
+
+import android.view.View;
+
+import com.github.metagalactic2.views.ExpandableImageView.ExpandAnimationMode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Checks that both expand animation modes leave the items where a plain layout would put them,
+ * also when the animation is reversed by tapping again while it runs
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ExpandAnimationModeTest {
+
+    private static final int ITEM_COUNT = 10;
+
+    // Frames between taps that reverse a running expand/collapse animation, well within it
+    private static final int REVERSAL_FRAMES = 4;
+
+    private GalleryFixture mFixture;
+    private ExpandableImageView mView;
+
+    @Before
+    public void setUp() {
+        mFixture = new GalleryFixture();
+        mView = mFixture.getView();
+        mView.setEndPagesCentered(true);
+        mFixture.setItems(ITEM_COUNT);
+        mFixture.show();
+    }
+
+    @Test
+    public void bothModes_endInTheSameGeometry() {
+        assertBothModesEndInTheSameGeometry();
+    }
+
+    @Test
+    public void bothModes_endInTheSameGeometry_awayFromTheFirstPage() {
+        mFixture.fling(-4000f);
+
+        assertBothModesEndInTheSameGeometry();
+    }
+
+    @Test
+    public void tapMidAnimation_returnsToTheStartState_inLayoutMode() {
+        assertTapMidAnimationReturnsToTheStartState(ExpandAnimationMode.LAYOUT);
+    }
+
+    @Test
+    public void tapMidAnimation_returnsToTheStartState_inTransformMode() {
+        assertTapMidAnimationReturnsToTheStartState(ExpandAnimationMode.TRANSFORM);
+    }
+
+    @Test
+    public void oddNumberOfReversals_endsInTheStartState() {
+        for (ExpandAnimationMode mode : ExpandAnimationMode.values()) {
+            mView.setExpandAnimationMode(mode);
+            List<String> collapsed = captureGeometry();
+
+            toggleWithReversals(3);
+            assertEquals(mode.toString(), collapsed, captureGeometry());
+        }
+    }
+
+    @Test
+    public void evenNumberOfReversals_endsInTheToggledState() {
+        for (ExpandAnimationMode mode : ExpandAnimationMode.values()) {
+            mView.setExpandAnimationMode(mode);
+            List<String> collapsed = captureGeometry();
+            mFixture.toggle();
+            List<String> expanded = captureGeometry();
+            mFixture.toggle();
+
+            toggleWithReversals(2);
+            assertEquals(mode.toString(), expanded, captureGeometry());
+            mFixture.toggle();
+            assertEquals(mode.toString(), collapsed, captureGeometry());
+        }
+    }
+
+    private void assertTapMidAnimationReturnsToTheStartState(ExpandAnimationMode mode) {
+        mView.setExpandAnimationMode(mode);
+        List<String> collapsed = captureGeometry();
+
+        toggleWithReversals(1);
+        assertEquals(collapsed, captureGeometry());
+
+        // The paging state was left alone, so the next tap still expands, and reversing that
+        // returns to the expanded state
+        mFixture.toggle();
+        List<String> expanded = captureGeometry();
+        assertNotEquals(collapsed, expanded);
+
+        toggleWithReversals(1);
+        assertEquals(expanded, captureGeometry());
+    }
+
+    private void assertBothModesEndInTheSameGeometry() {
+        List<String> collapsed = captureGeometry();
+
+        mView.setExpandAnimationMode(ExpandAnimationMode.LAYOUT);
+        mFixture.toggle();
+        List<String> expandedByLayout = captureGeometry();
+        mFixture.toggle();
+        List<String> collapsedByLayout = captureGeometry();
+
+        mView.setExpandAnimationMode(ExpandAnimationMode.TRANSFORM);
+        mFixture.toggle();
+        List<String> expandedByTransform = captureGeometry();
+        mFixture.toggle();
+        List<String> collapsedByTransform = captureGeometry();
+
+        assertEquals(collapsed, collapsedByLayout);
+        assertEquals(expandedByLayout, expandedByTransform);
+        assertEquals(collapsedByLayout, collapsedByTransform);
+    }
+
+    /**
+     * Taps to toggle the state, then taps again the given number of times while the animation is
+     * still running, and waits for it to finish
+     */
+    private void toggleWithReversals(int reversals) {
+        mView.onImageClicked(mView.getFirstSelectedItem());
+        for (int i = 0; i < reversals; i++) {
+            mFixture.advanceFrames(REVERSAL_FRAMES);
+            mView.onImageClicked(mView.getFirstSelectedItem());
+        }
+        mFixture.advanceFrames(GalleryFixture.TOGGLE_FRAMES);
+    }
+
+    /**
+     * @return the view's padding and height, and the visual left edge and width of every child
+     */
+    private List<String> captureGeometry() {
+        List<String> geometry = new ArrayList<>();
+        geometry.add("padding " + mView.getPaddingLeft() + "," + mView.getPaddingRight());
+        geometry.add("height " + mView.getHeight());
+        for (int i = 0; i < mView.getChildCount(); i++) {
+            View child = mView.getChildAt(i);
+            int position = mView.getChildAdapterPosition(child);
+            int left = Math.round(child.getLeft() + child.getTranslationX());
+            int width = Math.round(child.getWidth() * child.getScaleX());
+            geometry.add(position + ": left " + left + ", width " + width);
+        }
+        return geometry;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.metagalactic2.views;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ExpandableImageViewPoolTest {
+
+    private static final int ITEM_COUNT = 50;
+
+    private GalleryFixture mFixture;
+    private ExpandableImageViewPool mPool;
+    private ExpandableImageView mView;
+
+    @Before
+    public void setUp() {
+        mFixture = new GalleryFixture();
+        mView = mFixture.getView();
+        mView.setCollapsedViewWidth(0.4f);
+        mFixture.setItems(ITEM_COUNT);
+
+        mPool = new ExpandableImageViewPool(1);
+        mPool.attach(mView);
+
+        // Not refreshed yet, so that the tests decide when holders are taken from the pool
+        mFixture.attach();
+    }
+
+    @Test
+    public void recommendedSize_includesVisibleAndEagerItems() {
+        // Three items of 40% of the width are visible, four while scrolling, plus at least the
+        // page prefetched ahead
+        assertTrue(String.valueOf(mPool.getRecommendedSize()), mPool.getRecommendedSize() >= 6);
+    }
+
+    @Test
+    public void prewarm_refillsThePool() {
+        mPool.prewarm(mView);
+        assertEquals(mPool.getRecommendedSize(), mPool.getRecycledViewCount());
+
+        mView.refresh();
+        mFixture.layOut();
+        assertTrue(mPool.getRecycledViewCount() < mPool.getRecommendedSize());
+
+        mPool.prewarm(mView);
+        assertEquals(mPool.getRecommendedSize(), mPool.getRecycledViewCount());
+    }
+
+    @Test
+    public void scrollingAfterPrewarm_createsNoHolders() {
+        mPool.prewarm(mView);
+        mView.getMetrics().reset();
+
+        mView.refresh();
+        mFixture.layOut();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            mView.scrollBy(GalleryFixture.WIDTH / 3, 0);
+            mFixture.layOut();
+        }
+
+        assertEquals(0, mView.getMetrics().getViewHolderCreations());
+    }
+}
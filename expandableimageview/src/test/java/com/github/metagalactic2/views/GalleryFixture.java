@@ -0,0 +1,186 @@
+package com.github.metagalactic2.views;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An ExpandableImageView showing generated items in a Robolectric activity, and the means to drive
+ * it frame by frame. The view tests and the scenario benchmarks all set up and step the view
+ * through this, so they exercise it the same way.
+ * <p>
+ * The view starts out collapsed with two items per page. Frames are simulated by advancing the
+ * main looper's clock. The activity's window doesn't schedule traversals under Robolectric, so
+ * each frame also lays the view out if it asked for it.
+ */
+class GalleryFixture {
+
+    static final int WIDTH = 480;
+    static final int HEIGHT_MIN = 200;
+    static final int HEIGHT_MAX = 400;
+
+    // Long enough for an expand/collapse animation and the refresh that follows it
+    static final int TOGGLE_FRAMES = 40;
+
+    private static final long FRAME_MILLIS = 16;
+
+    // Upper bound for a snap to settle, well above the paging animation time
+    private static final int MAX_SETTLE_FRAMES = 120;
+
+    private final ExpandableImageView mView;
+    private final FrameLayout mRoot;
+
+    GalleryFixture() {
+        this(new ExpandableImageView(createActivity()));
+    }
+
+    /**
+     * @param view the view to drive, created with an activity from {@link #createActivity()}
+     */
+    GalleryFixture(ExpandableImageView view) {
+        mView = view;
+        mView.setPagerHeightMin(HEIGHT_MIN);
+        mView.setPagingHeightMax(HEIGHT_MAX);
+        mView.setCollapsedNumberOfItemsPerPage(2);
+        mView.setCollapsed(true);
+        mRoot = new FrameLayout(view.getContext());
+    }
+
+    /**
+     * @return a started, visible activity to create the view with
+     */
+    static Activity createActivity() {
+        return Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+    }
+
+    /**
+     * @param itemCount the number of items to create
+     * @return items with a distinct image URL each, and no content description
+     */
+    static List<ExpandableImageViewPagerItem> createItems(int itemCount) {
+        List<ExpandableImageViewPagerItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(ExpandableImageViewPagerItem.create(getImageUrl(i)));
+        }
+        return items;
+    }
+
+    /**
+     * @param index the index of a generated item
+     * @return the image URL of the item
+     */
+    static String getImageUrl(int index) {
+        return "http://example.com/" + index + ".jpg";
+    }
+
+    ExpandableImageView getView() {
+        return mView;
+    }
+
+    /**
+     * Sets the given number of generated items, see {@link #createItems(int)}
+     */
+    void setItems(int itemCount) {
+        mView.setImageUrls(createItems(itemCount));
+    }
+
+    /**
+     * Puts the view on screen, without refreshing it
+     */
+    void attach() {
+        mRoot.addView(mView, new FrameLayout.LayoutParams(WIDTH, HEIGHT_MIN));
+        ((Activity) mView.getContext()).setContentView(mRoot);
+    }
+
+    /**
+     * Puts the view on screen and lays it out with its current data
+     */
+    void show() {
+        attach();
+        refresh();
+    }
+
+    void refresh() {
+        mView.refresh();
+        advanceFrames(1);
+    }
+
+    /**
+     * Taps the first selected item, which expands or collapses the view, and waits for the
+     * animation to finish.
+     */
+    void toggle() {
+        mView.onImageClicked(mView.getFirstSelectedItem());
+        advanceFrames(TOGGLE_FRAMES);
+    }
+
+    /**
+     * Flings and waits for the snap to settle.
+     *
+     * @param velocityX the fling velocity, negative values move towards the end of the data
+     */
+    void fling(float velocityX) {
+        mView.snapToPosition(velocityX, true);
+        settle();
+    }
+
+    /**
+     * Waits for the running snap to settle, and for anything posted at its end to run
+     */
+    void settle() {
+        for (int frame = 0; frame < MAX_SETTLE_FRAMES; frame++) {
+            advanceFrames(1);
+            if (mView.getScrollState() == ExpandableImageView.SCROLL_STATE_IDLE) {
+                break;
+            }
+        }
+        // Let anything posted at the end of the snap (e.g. prefetches) run
+        advanceFrames(TOGGLE_FRAMES);
+    }
+
+    /**
+     * Touches down in the middle of the view, the way a finger would before dragging
+     */
+    void touchDown() {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, WIDTH / 2,
+                HEIGHT_MIN / 2, 0);
+        mView.onInterceptTouchEvent(down);
+        down.recycle();
+    }
+
+    void advanceFrames(int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            ShadowLooper.idleMainLooper(FRAME_MILLIS);
+            layOutIfRequested();
+        }
+    }
+
+    /**
+     * Does the layout pass the window would do next, if the view asked for one
+     */
+    void layOutIfRequested() {
+        if (mRoot.isLayoutRequested() || mView.isLayoutRequested()) {
+            layOut();
+        }
+    }
+
+    /**
+     * Measures and lays out the view at its current height, without advancing the clock
+     */
+    void layOut() {
+        int height = mView.getLayoutParams().height > 0 ? mView.getLayoutParams().height
+                : HEIGHT_MAX;
+        mRoot.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        mRoot.layout(0, 0, WIDTH, height);
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.metagalactic2.views;
+
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+import com.github.metagalactic.views.ScalableImageView;
+import com.github.metagalactic2.adapter.ExpandableImageViewAdapter;
+import com.github.metagalactic2.image_loader.ImageRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ImageQualityUpdateTest {
+
+    private static final int ITEM_COUNT = 10;
+
+    private GalleryFixture mFixture;
+    private ExpandableImageView mView;
+    private RecordingListener mListener;
+    private int mImageQualityUpdates;
+
+    @Before
+    public void setUp() {
+        mFixture = new GalleryFixture();
+        mView = mFixture.getView();
+        mListener = new RecordingListener();
+        mView.setListener(mListener);
+        mFixture.setItems(ITEM_COUNT);
+        mFixture.show();
+
+        mView.getAdapter().registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                if (payload == ExpandableImageViewAdapter.Payload.IMAGE_QUALITY) {
+                    mImageQualityUpdates++;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void toggle_reloadsVisibleItemsAtTheirNewSize() {
+        mListener.mRequests.clear();
+        mView.getMetrics().reset();
+
+        // Expand
+        mFixture.toggle();
+
+        assertTrue(mImageQualityUpdates > 0);
+        assertTrue(mView.getMetrics().getImageQualityReloads() > 0);
+        ImageRequest expandedRequest = findRequest(0);
+        assertTrue(String.valueOf(mListener.mRequests), expandedRequest != null);
+
+        // Collapse again, the visible items go back to their collapsed size
+        mListener.mRequests.clear();
+        mFixture.toggle();
+
+        ImageRequest collapsedRequest = findRequest(0);
+        assertTrue(String.valueOf(mListener.mRequests), collapsedRequest != null);
+        assertTrue(collapsedRequest.targetWidth() < expandedRequest.targetWidth());
+    }
+
+    @Nullable
+    private ImageRequest findRequest(int position) {
+        String imageUrl = GalleryFixture.getImageUrl(position);
+        for (int i = mListener.mRequests.size() - 1; i >= 0; i--) {
+            if (mListener.mRequests.get(i).imageUrl().equals(imageUrl)) {
+                return mListener.mRequests.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static class RecordingListener
+            implements ExpandableImageView.OnSizedImageEventListener {
+
+        final List<ImageRequest> mRequests = new ArrayList<>();
+
+        @Override
+        public void onImageClicked(int position) {
+        }
+
+        @Override
+        public void onImagesSelected(int firstPosition, int numberOfItems) {
+        }
+
+        @Override
+        public void onClearImageFromYourFavoriteImageLibrary(
+                ScalableImageView scalableImageView) {
+        }
+
+        @Override
+        public void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
+                                                            String imageUrl,
+                                                            @Nullable Drawable placeholder) {
+        }
+
+        @Override
+        public void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
+                                                            ImageRequest request,
+                                                            @Nullable Drawable placeholder) {
+            mRequests.add(request);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.metagalactic2.views;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ItemTransformsTest {
+
+    private static final int LIST_WIDTH = 400;
+    private static final int LIST_HEIGHT = 200;
+    private static final int ITEM_WIDTH = 100;
+    private static final float DELTA = 0.01f;
+
+    private RecyclerView mRecyclerView;
+    private ItemTransforms mItemTransforms;
+
+    @Before
+    public void setUp() {
+        mRecyclerView = new RecyclerView(RuntimeEnvironment.application);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(RuntimeEnvironment.application,
+                LinearLayoutManager.HORIZONTAL, false));
+        mRecyclerView.setAdapter(new FixedWidthAdapter());
+        mRecyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(LIST_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(LIST_HEIGHT, View.MeasureSpec.EXACTLY));
+        mRecyclerView.layout(0, 0, LIST_WIDTH, LIST_HEIGHT);
+
+        mItemTransforms = new ItemTransforms(mRecyclerView);
+        mItemTransforms.setGeometry(1, ITEM_WIDTH, -50, ITEM_WIDTH, 2 * ITEM_WIDTH,
+                LIST_HEIGHT / 2, LIST_HEIGHT);
+        mItemTransforms.start();
+    }
+
+    @Test
+    public void startFraction_matchesLayout() {
+        mItemTransforms.applyFraction(0f);
+
+        View child = mRecyclerView.getChildAt(2);
+        assertEquals(2 * ITEM_WIDTH, visualLeft(child), DELTA);
+        assertEquals(ITEM_WIDTH, child.getWidth() * child.getScaleX(), DELTA);
+        assertEquals(LIST_HEIGHT / 2, child.getHeight() * child.getScaleY(), DELTA);
+    }
+
+    @Test
+    public void endFraction_matchesEndGeometry() {
+        mItemTransforms.applyFraction(1f);
+
+        assertEquals(-50, visualLeft(mRecyclerView.getChildAt(1)), DELTA);
+        View child = mRecyclerView.getChildAt(2);
+        assertEquals(-50 + 2 * ITEM_WIDTH, visualLeft(child), DELTA);
+        assertEquals(2 * ITEM_WIDTH, child.getWidth() * child.getScaleX(), DELTA);
+        assertEquals(LIST_HEIGHT, child.getHeight() * child.getScaleY(), DELTA);
+    }
+
+    @Test
+    public void reset_removesTransforms() {
+        mItemTransforms.applyFraction(0.5f);
+        mItemTransforms.reset();
+
+        View child = mRecyclerView.getChildAt(2);
+        assertEquals(1f, child.getScaleX(), DELTA);
+        assertEquals(0f, child.getTranslationX(), DELTA);
+        assertEquals(View.LAYER_TYPE_NONE, child.getLayerType());
+    }
+
+    private static float visualLeft(View child) {
+        return child.getLeft() + child.getTranslationX();
+    }
+
+    private static class FixedWidthAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new View(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(ITEM_WIDTH,
+                    ViewGroup.LayoutParams.MATCH_PARENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            // Nothing to bind
+        }
+
+        @Override
+        public int getItemCount() {
+            return 10;
+        }
+    }
+}
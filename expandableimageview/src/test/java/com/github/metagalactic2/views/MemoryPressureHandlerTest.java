@@ -0,0 +1,129 @@
+package com.github.metagalactic2.views;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.support.v7.widget.RecyclerView;
+
+import com.github.metagalactic2.adapter.ExpandableImageViewAdapter;
+
+import com.github.metagalactic2.layout_manager.CustomLinearLayoutManager;
+import com.github.metagalactic2.test_utils.RecyclerViewInternals;
+import com.github.metagalactic2.views.ExpandableImageView.MemoryDegradation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MemoryPressureHandlerTest {
+
+    private ExpandableImageView mView;
+    private CustomLinearLayoutManager mLayoutManager;
+    private MemoryPressureHandler mHandler;
+
+    @Before
+    public void setUp() {
+        mView = new ExpandableImageView(RuntimeEnvironment.application);
+        mLayoutManager = (CustomLinearLayoutManager) mView.getLayoutManager();
+        mHandler = new MemoryPressureHandler(mView);
+    }
+
+    @Test
+    public void trimLevels_degradeStepByStep() {
+        int eagerItems = mLayoutManager.getNumberOfItemsToEagerLoad();
+
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(MemoryDegradation.NO_EAGER_LOADING, mView.getMemoryDegradation());
+        assertEquals(0, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(Bitmap.Config.ARGB_8888, mView.getBitmapConfig());
+
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES, mView.getMemoryDegradation());
+
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(MemoryDegradation.LOW_MEMORY_BITMAP_CONFIG, mView.getMemoryDegradation());
+        assertEquals(Bitmap.Config.RGB_565, mView.getBitmapConfig());
+
+        mView.restoreFromMemoryPressure();
+        assertEquals(MemoryDegradation.NONE, mView.getMemoryDegradation());
+        assertEquals(eagerItems, mLayoutManager.getNumberOfItemsToEagerLoad());
+        assertEquals(Bitmap.Config.ARGB_8888, mView.getBitmapConfig());
+    }
+
+    @Test
+    public void releasingOffScreenImages_emptiesAnExplicitlySizedItemViewCache() {
+        mView.setItemViewCacheSize(5);
+        assertEquals(5, RecyclerViewInternals.getItemViewCacheSize(mView));
+
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(0, RecyclerViewInternals.getItemViewCacheSize(mView));
+
+        mView.restoreFromMemoryPressure();
+        assertEquals(5, RecyclerViewInternals.getItemViewCacheSize(mView));
+    }
+
+    @Test
+    public void uiHidden_isIgnored() {
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(MemoryDegradation.NONE, mView.getMemoryDegradation());
+    }
+
+    @Test
+    public void milderTrimLevels_doNotLowerTheDegradation() {
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(MemoryDegradation.LOW_MEMORY_BITMAP_CONFIG, mView.getMemoryDegradation());
+        assertEquals(Bitmap.Config.RGB_565, mView.getBitmapConfig());
+
+        // Only the restore timer steps back
+        ShadowLooper.idleMainLooper(MemoryPressureHandler.RESTORE_DELAY);
+        assertEquals(MemoryDegradation.RELEASE_OFF_SCREEN_IMAGES, mView.getMemoryDegradation());
+    }
+
+    @Test
+    public void lowMemoryBitmapConfig_doesNotReloadShownImages() {
+        List<ExpandableImageViewPagerItem> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            items.add(ExpandableImageViewPagerItem.create("http://example.com/" + i + ".jpg"));
+        }
+        mView.setImageUrls(items);
+        mView.refresh();
+        ShadowLooper.idleMainLooper();
+        assertEquals(items.size(), mView.getAdapter().getItemCount());
+
+        final int[] imageQualityUpdates = new int[1];
+        mView.getAdapter().registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                if (payload == ExpandableImageViewAdapter.Payload.IMAGE_QUALITY) {
+                    imageQualityUpdates[0]++;
+                }
+            }
+        });
+
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(Bitmap.Config.RGB_565, mView.getBitmapConfig());
+        assertEquals(0, imageQualityUpdates[0]);
+    }
+
+    @Test
+    public void degradation_isRestoredOnceIdle() {
+        mHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        ShadowLooper.idleMainLooper(MemoryPressureHandler.RESTORE_DELAY);
+        assertEquals(MemoryDegradation.NO_EAGER_LOADING, mView.getMemoryDegradation());
+
+        ShadowLooper.idleMainLooper(MemoryPressureHandler.RESTORE_DELAY);
+        assertEquals(MemoryDegradation.NONE, mView.getMemoryDegradation());
+    }
+}
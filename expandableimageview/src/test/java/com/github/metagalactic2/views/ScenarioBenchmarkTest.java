@@ -0,0 +1,129 @@
+package com.github.metagalactic2.views;
+
+import com.github.metagalactic2.test_utils.ScenarioBenchmark;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scripted scroll and expand/collapse workloads over large galleries. The cost of every scenario
+ * is written to a JSON report (see {@link #REPORT_FILE_PROPERTY}) so that releases can be
+ * compared. These take a while and are not part of the regular unit tests, see
+ * {@link ScenarioBenchmark}; what the scenarios must get right is checked by
+ * {@link ScenarioTest}.
+ */
+@Category(ScenarioBenchmark.class)
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ScenarioBenchmarkTest {
+
+    /**
+     * System property for overriding where the report is written
+     */
+    static final String REPORT_FILE_PROPERTY = "scenarioReportFile";
+
+    private static final String DEFAULT_REPORT_FILE = "build/reports/scenarios/scenarios.json";
+
+    private static final int SMALL_GALLERY = 1000;
+    private static final int LARGE_GALLERY = 10000;
+
+    private static final float FLING_VELOCITY = 4000f;
+
+    private static ScenarioHarness sHarness;
+
+    @BeforeClass
+    public static void setUpClass() {
+        sHarness = new ScenarioHarness();
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        File reportFile = new File(System.getProperty(REPORT_FILE_PROPERTY, DEFAULT_REPORT_FILE));
+        sHarness.writeReport(reportFile);
+        assertTrue(reportFile.isFile());
+    }
+
+    @Test
+    public void flingThroughGallery() {
+        for (int itemCount : new int[]{SMALL_GALLERY, LARGE_GALLERY}) {
+            sHarness.run("fling-forward-" + itemCount, itemCount,
+                    new ScenarioHarness.Scenario() {
+                        @Override
+                        public void run(ScenarioHarness harness) {
+                            for (int i = 0; i < 50; i++) {
+                                harness.fling(-FLING_VELOCITY);
+                            }
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void dragBackAndForth() {
+        sHarness.run("drag-back-and-forth-" + SMALL_GALLERY, SMALL_GALLERY,
+                new ScenarioHarness.Scenario() {
+                    @Override
+                    public void run(ScenarioHarness harness) {
+                        int dragDistance = GalleryFixture.WIDTH / 2;
+                        for (int i = 0; i < 20; i++) {
+                            harness.drag(dragDistance);
+                            harness.drag(dragDistance);
+                            harness.drag(-dragDistance);
+                        }
+                    }
+                });
+    }
+
+    @Test
+    public void expandAndCollapseWhileFlinging() {
+        sHarness.run("expand-collapse-" + SMALL_GALLERY, SMALL_GALLERY,
+                new ScenarioHarness.Scenario() {
+                    @Override
+                    public void run(ScenarioHarness harness) {
+                        for (int i = 0; i < 10; i++) {
+                            harness.toggle();
+                            harness.fling(-FLING_VELOCITY);
+                            harness.toggle();
+                            harness.fling(-FLING_VELOCITY);
+                        }
+                    }
+                });
+    }
+
+    @Test
+    public void caughtSnaps() {
+        sHarness.run("caught-snaps-" + SMALL_GALLERY, SMALL_GALLERY,
+                new ScenarioHarness.Scenario() {
+                    @Override
+                    public void run(ScenarioHarness harness) {
+                        for (int i = 0; i < 10; i++) {
+                            harness.flingAndCatch(-FLING_VELOCITY);
+                            harness.fling(-FLING_VELOCITY);
+                        }
+                    }
+                });
+    }
+
+    @Test
+    public void refreshWithoutDataChanges() {
+        sHarness.run("refresh-" + LARGE_GALLERY, LARGE_GALLERY,
+                new ScenarioHarness.Scenario() {
+                    @Override
+                    public void run(ScenarioHarness harness) {
+                        for (int i = 0; i < 20; i++) {
+                            harness.refresh();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.metagalactic2.views;
+
+import android.app.Activity;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+
+import com.github.metagalactic.views.ScalableImageView;
+import com.github.metagalactic2.metrics.ExpandableImageViewMetrics;
+import com.github.metagalactic2.test_utils.AllocationCounter;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs scripted workloads (drags, flings, expand/collapse toggles and refreshes) against an
+ * ExpandableImageView set up by a {@link GalleryFixture}, and records what each of them cost:
+ * binds, view holder creations, layout passes, image load callbacks and allocated bytes.
+ * <p>
+ * Frames are simulated by the fixture, so the numbers are deterministic and can be compared
+ * between releases. Allocations include Robolectric's own overhead and are only
+ * meaningful relative to other runs of the same harness.
+ */
+class ScenarioHarness {
+
+    /**
+     * A scripted workload, run against the harness' view
+     */
+    interface Scenario {
+
+        void run(ScenarioHarness harness);
+    }
+
+    // Frames into a snap at which it is caught by a touch
+    private static final int CAUGHT_SNAP_FRAMES = 5;
+
+    private final List<Result> mResults = new ArrayList<>();
+
+    private GalleryFixture mFixture;
+    private CountingExpandableImageView mView;
+    private int mLoadCallbacks;
+    private int mSelectionCallbacks;
+
+    /**
+     * Sets up a fresh view with the given number of generated items, collapsed and laid out, then
+     * runs the scenario and records its cost.
+     *
+     * @param name      the name the scenario is reported under
+     * @param itemCount the number of items in the gallery
+     * @param scenario  the workload to run
+     * @return the recorded cost of the scenario
+     */
+    Result run(String name, int itemCount, final Scenario scenario) {
+        setUp(itemCount);
+
+        mView.getMetrics().reset();
+        mView.mLayoutPasses = 0;
+        mLoadCallbacks = 0;
+        mSelectionCallbacks = 0;
+        long allocatedBytes = new AllocationCounter().measure(new Runnable() {
+            @Override
+            public void run() {
+                scenario.run(ScenarioHarness.this);
+            }
+        });
+
+        ExpandableImageViewMetrics metrics = mView.getMetrics().snapshot();
+        Result result = new Result(name, itemCount, metrics, mView.mLayoutPasses, mLoadCallbacks,
+                mSelectionCallbacks, allocatedBytes);
+        mResults.add(result);
+        return result;
+    }
+
+    /**
+     * Drags by the given distance, releases, and waits for the snap to settle.
+     *
+     * @param dx the distance to drag, positive values move towards the end of the data
+     */
+    void drag(int dx) {
+        mView.scrollBy(dx, 0);
+        mFixture.layOutIfRequested();
+        mView.snapToPosition(null, false);
+        mFixture.settle();
+    }
+
+    /**
+     * Flings and waits for the snap to settle.
+     *
+     * @param velocityX the fling velocity, negative values move towards the end of the data
+     */
+    void fling(float velocityX) {
+        mFixture.fling(velocityX);
+    }
+
+    /**
+     * Flings, then touches down again a few frames later, catching the snap before it settles.
+     *
+     * @param velocityX the fling velocity, negative values move towards the end of the data
+     */
+    void flingAndCatch(float velocityX) {
+        mView.snapToPosition(velocityX, true);
+        mFixture.advanceFrames(CAUGHT_SNAP_FRAMES);
+        mFixture.touchDown();
+    }
+
+    /**
+     * Taps the first selected item, which expands or collapses the view, and waits for the
+     * animation to finish.
+     */
+    void toggle() {
+        mFixture.toggle();
+    }
+
+    void refresh() {
+        mFixture.refresh();
+    }
+
+    /**
+     * Writes all results recorded so far as a JSON document.
+     *
+     * @param file the file to write to, created along with its parent directories if needed
+     */
+    void writeReport(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        StringBuilder json = new StringBuilder("{\"scenarios\":[");
+        for (int i = 0; i < mResults.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            mResults.get(i).appendJson(json);
+        }
+        json.append("]}\n");
+
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void setUp(int itemCount) {
+        mView = new CountingExpandableImageView(GalleryFixture.createActivity());
+        mFixture = new GalleryFixture(mView);
+        mView.setListener(new CountingListener());
+        mFixture.setItems(itemCount);
+        mFixture.show();
+    }
+
+    /**
+     * The cost of one scenario
+     */
+    static class Result {
+
+        final String mName;
+        final int mItemCount;
+        final ExpandableImageViewMetrics mMetrics;
+        final int mLayoutPasses;
+        final int mLoadCallbacks;
+        final int mSelectionCallbacks;
+        final long mAllocatedBytes;
+
+        Result(String name, int itemCount, ExpandableImageViewMetrics metrics, int layoutPasses,
+               int loadCallbacks, int selectionCallbacks, long allocatedBytes) {
+            mName = name;
+            mItemCount = itemCount;
+            mMetrics = metrics;
+            mLayoutPasses = layoutPasses;
+            mLoadCallbacks = loadCallbacks;
+            mSelectionCallbacks = selectionCallbacks;
+            mAllocatedBytes = allocatedBytes;
+        }
+
+        private void appendJson(StringBuilder json) {
+            json.append("{\"name\":\"").append(mName).append('"')
+                    .append(",\"itemCount\":").append(mItemCount)
+                    .append(",\"fullBinds\":").append(mMetrics.getFullBinds())
+                    .append(",\"payloadBinds\":").append(mMetrics.getPayloadBinds())
+                    .append(",\"viewHolderCreations\":").append(mMetrics.getViewHolderCreations())
+                    .append(",\"layoutPasses\":").append(mLayoutPasses)
+                    .append(",\"imageLoads\":").append(mMetrics.getImageLoads())
+                    .append(",\"sameUrlImageLoads\":").append(mMetrics.getSameUrlImageLoads())
+                    .append(",\"imageClears\":").append(mMetrics.getImageClears())
+                    .append(",\"loadCallbacks\":").append(mLoadCallbacks)
+                    .append(",\"selectionCallbacks\":").append(mSelectionCallbacks)
+                    .append(",\"allocatedBytes\":").append(mAllocatedBytes)
+                    .append('}');
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder json = new StringBuilder();
+            appendJson(json);
+            return json.toString();
+        }
+    }
+
+    private static class CountingExpandableImageView extends ExpandableImageView {
+
+        private int mLayoutPasses;
+
+        CountingExpandableImageView(Activity activity) {
+            super(activity);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            mLayoutPasses++;
+            super.onLayout(changed, l, t, r, b);
+        }
+    }
+
+    private class CountingListener implements ExpandableImageView.OnImageEventListener {
+
+        @Override
+        public void onImageClicked(int position) {
+        }
+
+        @Override
+        public void onImagesSelected(int firstPosition, int numberOfItems) {
+            mSelectionCallbacks++;
+        }
+
+        @Override
+        public void onClearImageFromYourFavoriteImageLibrary(
+                ScalableImageView scalableImageView) {
+        }
+
+        @Override
+        public void onLoadImageFromYourFavoriteImageLibrary(ScalableImageView scalableImageView,
+                                                            String imageUrl,
+                                                            @Nullable Drawable placeholder) {
+            mLoadCallbacks++;
+        }
+    }
+}
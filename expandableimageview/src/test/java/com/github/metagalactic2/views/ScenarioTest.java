@@ -0,0 +1,79 @@
+package com.github.metagalactic2.views;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The behavior the scenario benchmarks rely on, checked on a gallery small enough for the unit
+ * tests. See {@link ScenarioBenchmarkTest} for what the scenarios cost.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ScenarioTest {
+
+    // Large enough for every fling below to move on to a new page
+    private static final int ITEM_COUNT = 200;
+
+    private static final float FLING_VELOCITY = 4000f;
+
+    private ScenarioHarness mHarness;
+
+    @Before
+    public void setUp() {
+        mHarness = new ScenarioHarness();
+    }
+
+    @Test
+    public void flings_reportEveryPageOnce() {
+        ScenarioHarness.Result result = mHarness.run("fling-forward", ITEM_COUNT,
+                new ScenarioHarness.Scenario() {
+                    @Override
+                    public void run(ScenarioHarness harness) {
+                        for (int i = 0; i < 50; i++) {
+                            harness.fling(-FLING_VELOCITY);
+                        }
+                    }
+                });
+
+        // Every fling settles on a new page, which is reported exactly once
+        assertEquals(result.toString(), 50, result.mSelectionCallbacks);
+    }
+
+    @Test
+    public void caughtSnaps_areNotReported() {
+        ScenarioHarness.Result result = mHarness.run("caught-snaps", ITEM_COUNT,
+                new ScenarioHarness.Scenario() {
+                    @Override
+                    public void run(ScenarioHarness harness) {
+                        for (int i = 0; i < 10; i++) {
+                            harness.flingAndCatch(-FLING_VELOCITY);
+                            harness.fling(-FLING_VELOCITY);
+                        }
+                    }
+                });
+
+        // Only the snaps that were allowed to settle select a page
+        assertEquals(result.toString(), 10, result.mSelectionCallbacks);
+    }
+
+    @Test
+    public void refreshWithoutDataChanges_loadsNoImages() {
+        ScenarioHarness.Result result = mHarness.run("refresh", ITEM_COUNT,
+                new ScenarioHarness.Scenario() {
+                    @Override
+                    public void run(ScenarioHarness harness) {
+                        for (int i = 0; i < 20; i++) {
+                            harness.refresh();
+                        }
+                    }
+                });
+
+        assertEquals(result.toString(), 0, result.mMetrics.getImageLoads());
+        assertEquals(result.toString(), 0, result.mMetrics.getFullBinds());
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.metagalactic2.views;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.github.metagalactic2.adapter.ExpandableImageViewAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class UpdateImageUrlsTest {
+
+    private static final int ITEM_COUNT = 10;
+
+    // Upper bound for the background diff to be computed and posted back
+    private static final int MAX_DIFF_WAIT_MILLIS = 5000;
+
+    private GalleryFixture mFixture;
+    private ExpandableImageView mView;
+    private List<ExpandableImageViewPagerItem> mItems;
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mFixture = new GalleryFixture();
+        mView = mFixture.getView();
+        mItems = GalleryFixture.createItems(ITEM_COUNT);
+        mView.setImageUrls(mItems);
+        mFixture.show();
+
+        mObserver = new RecordingObserver();
+        mView.getAdapter().registerAdapterDataObserver(mObserver);
+    }
+
+    @Test
+    public void move_isDispatchedAsAMove() {
+        List<ExpandableImageViewPagerItem> newItems = new ArrayList<>(mItems);
+        newItems.add(0, newItems.remove(ITEM_COUNT - 1));
+
+        update(newItems);
+
+        assertEquals(Arrays.asList("move " + (ITEM_COUNT - 1) + " 0"),
+                mObserver.mStructuralUpdates);
+    }
+
+    @Test
+    public void insert_isDispatchedAsAnInsert() {
+        List<ExpandableImageViewPagerItem> newItems = new ArrayList<>(mItems);
+        newItems.add(3, item(ITEM_COUNT, null));
+
+        update(newItems);
+
+        assertEquals(Arrays.asList("insert 3 1"), mObserver.mStructuralUpdates);
+        assertEquals(ITEM_COUNT + 1, mView.getAdapter().getItemCount());
+    }
+
+    @Test
+    public void contentDescriptionChange_isDispatchedAsAChange() {
+        List<ExpandableImageViewPagerItem> newItems = new ArrayList<>(mItems);
+        newItems.set(1, item(1, "Description"));
+
+        update(newItems);
+
+        assertEquals(Arrays.asList("change 1 1"), mObserver.mStructuralUpdates);
+    }
+
+    private void update(List<ExpandableImageViewPagerItem> newItems) {
+        mView.updateImageUrls(newItems);
+
+        // The diff is computed on a background thread and applied through the main looper
+        long deadline = System.currentTimeMillis() + MAX_DIFF_WAIT_MILLIS;
+        while (mObserver.mStructuralUpdates.isEmpty()
+                && System.currentTimeMillis() < deadline) {
+            ShadowLooper.idleMainLooper();
+            Thread.yield();
+        }
+        mFixture.layOut();
+    }
+
+    private static ExpandableImageViewPagerItem item(int index, String description) {
+        return ExpandableImageViewPagerItem.create(GalleryFixture.getImageUrl(index),
+                description);
+    }
+
+    /**
+     * Records every update except the partial rebinds of typed payloads, which are dispatched
+     * for all items whenever the "x of y" content descriptions may have changed
+     */
+    private static class RecordingObserver extends RecyclerView.AdapterDataObserver {
+
+        final List<String> mStructuralUpdates = new ArrayList<>();
+
+        @Override
+        public void onChanged() {
+            mStructuralUpdates.add("data set changed");
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            if (!(payload instanceof ExpandableImageViewAdapter.Payload)) {
+                mStructuralUpdates.add("change " + positionStart + " " + itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mStructuralUpdates.add("insert " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mStructuralUpdates.add("remove " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            mStructuralUpdates.add("move " + fromPosition + " " + toPosition);
+        }
+    }
+}
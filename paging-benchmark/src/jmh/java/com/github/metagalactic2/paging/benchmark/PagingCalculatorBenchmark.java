@@ -0,0 +1,94 @@
+package com.github.metagalactic2.paging.benchmark;
+
+import com.github.metagalactic2.paging.PagingCalculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the snap target and padding calculations of {@link PagingCalculator}. Each invocation
+ * walks through every position once, the way a long series of drags and flings would, so the
+ * reported time is per pass over all items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PagingCalculatorBenchmark {
+
+    private static final int DISPLAY_WIDTH = 1080;
+
+    @Param({"10", "1000", "10000"})
+    public int itemCount;
+
+    @Param({"1", "2", "3"})
+    public int itemsPerPage;
+
+    @Param({"false", "true"})
+    public boolean endPagesCentered;
+
+    private PagingCalculator mCalculator;
+    private int mDragOffset;
+
+    @Setup
+    public void setUp() {
+        mCalculator = new PagingCalculator();
+        mCalculator.setDisplayWidth(DISPLAY_WIDTH);
+        mCalculator.setItemCount(itemCount);
+        mCalculator.setItemsPerPage(itemsPerPage);
+        mCalculator.setItemsPerPageCurrent(itemsPerPage);
+        mCalculator.setViewWidthFractionMin(1f / itemsPerPage);
+        mCalculator.setViewWidthFractionCurrent(1f / itemsPerPage);
+        mCalculator.setCollapsed(true);
+        mCalculator.setEndPagesCentered(endPagesCentered);
+
+        // Just past the snap threshold, so that drags move on to the next page
+        mDragOffset = -(mCalculator.getViewWidth() / 2 + 1);
+    }
+
+    @Benchmark
+    public void dragSnapTargets(Blackhole blackhole) {
+        PagingCalculator calculator = mCalculator;
+        for (int position = 0; position < itemCount; position++) {
+            blackhole.consume(getValidTarget(
+                    calculator.getNewTargetPosition(position, mDragOffset, 0f, false)));
+        }
+    }
+
+    @Benchmark
+    public void flingSnapTargets(Blackhole blackhole) {
+        PagingCalculator calculator = mCalculator;
+        for (int position = 0; position < itemCount; position++) {
+            // Alternate between flinging forward and back
+            float velocityX = (position & 1) == 0 ? -1000f : 1000f;
+            blackhole.consume(getValidTarget(
+                    calculator.getNewTargetPosition(position, -1, velocityX, true)));
+        }
+    }
+
+    @Benchmark
+    public void paddingCalculations(Blackhole blackhole) {
+        PagingCalculator calculator = mCalculator;
+        for (int position = 0; position < itemCount; position++) {
+            blackhole.consume(calculator.isPaddingVisibleForItem(position, true));
+            blackhole.consume(calculator.getLeftEndValueForPosition(position));
+        }
+        blackhole.consume(calculator.getPaddingToCenterFirstItem());
+    }
+
+    // Same correction ExpandableImageView applies to every snap target
+    private int getValidTarget(int targetPosition) {
+        if (!mCalculator.isValidPagingPosition(targetPosition)) {
+            return mCalculator.getValidPagingPosition(targetPosition);
+        }
+        return targetPosition;
+    }
+}
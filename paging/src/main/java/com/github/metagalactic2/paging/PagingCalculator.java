@@ -0,0 +1,346 @@
+package com.github.metagalactic2.paging;
+
+/**
+ * The paging math of an ExpandableImageView: which item a drag or fling should snap to, which
+ * positions start a "page", and how much padding is needed to center the end pages.
+ * <p>
+ * The calculator only holds the current paging configuration, which must be kept up to date
+ * through its setters. It has no Android dependencies and none of its methods allocate, so it can
+ * be tested and benchmarked on a plain JVM.
+ */
+public class PagingCalculator {
+
+    private int mDisplayWidth;
+    private int mItemCount;
+    private int mItemsPerPage = 1;
+    private int mItemsPerPageCurrent = 1;
+    private float mViewWidthFractionMin = 0.5f;
+    private float mViewWidthFractionCurrent = 0.5f;
+    private boolean mIsCollapsed = false;
+    private boolean mAreEndPagesCentered = false;
+
+    /**
+     * @param displayWidth the width (in pixels) item widths are relative to
+     */
+    public void setDisplayWidth(int displayWidth) {
+        mDisplayWidth = displayWidth;
+    }
+
+    /**
+     * @param itemCount the number of items being paged through
+     */
+    public void setItemCount(int itemCount) {
+        mItemCount = itemCount;
+    }
+
+    /**
+     * @param itemsPerPage the number of items per page in the collapsed state
+     */
+    public void setItemsPerPage(int itemsPerPage) {
+        mItemsPerPage = itemsPerPage;
+    }
+
+    /**
+     * @param itemsPerPageCurrent the number of items per page in the current state
+     */
+    public void setItemsPerPageCurrent(int itemsPerPageCurrent) {
+        mItemsPerPageCurrent = itemsPerPageCurrent;
+    }
+
+    /**
+     * @param fraction the width of each item in the collapsed state, as a fraction of the display
+     *                 width
+     */
+    public void setViewWidthFractionMin(float fraction) {
+        mViewWidthFractionMin = fraction;
+    }
+
+    /**
+     * @param fraction the width of each item in the current state, as a fraction of the display
+     *                 width
+     */
+    public void setViewWidthFractionCurrent(float fraction) {
+        mViewWidthFractionCurrent = fraction;
+    }
+
+    public void setCollapsed(boolean isCollapsed) {
+        mIsCollapsed = isCollapsed;
+    }
+
+    /**
+     * @param endPagesCentered true if the first and last items are centered in the collapsed state
+     */
+    public void setEndPagesCentered(boolean endPagesCentered) {
+        mAreEndPagesCentered = endPagesCentered;
+    }
+
+    /**
+     * @return the current width (in pixels) of each item
+     */
+    public int getViewWidth() {
+        return Math.round(mDisplayWidth * mViewWidthFractionCurrent);
+    }
+
+    /**
+     * @return the width (in pixels) of each item in the collapsed state
+     */
+    public int getViewWidthMin() {
+        return Math.round(mDisplayWidth * mViewWidthFractionMin);
+    }
+
+    /**
+     * Decides which position a drag or fling should snap to. The result is always within the
+     * bounds of the data, but it is not necessarily a valid paging position; see
+     * {@link #isValidPagingPosition(int)}.
+     *
+     * @param firstVisiblePosition the position of the first visible item
+     * @param currentLeftOffset    the left edge of the first visible item
+     * @param velocityX            the horizontal fling velocity, only used when flinging
+     * @param isFling              true if snapping at the end of a fling, false if at the end of a
+     *                             drag
+     * @return the position to snap to
+     */
+    public int getNewTargetPosition(int firstVisiblePosition, int currentLeftOffset,
+                                    float velocityX, boolean isFling) {
+        int relativePagingPosition = getRelativePagingPosition(firstVisiblePosition);
+
+        int itemsPerPage = mItemsPerPageCurrent;
+        if (firstVisiblePosition == 0 && mAreEndPagesCentered) {
+            // If we are at the first position and it is centered, the relevant items per page here
+            // is just a single item.
+            itemsPerPage = 1;
+        }
+
+        // Given the first visible position and the relative position, decide what the current,
+        // next, and previous "pages" should be. Note that for small scrolling movements toward the
+        // left of the screen, the "current" position will be based on the views seen before the
+        // scroll, while for scrolling movements toward the right of the screen the "current"
+        // position will actually be based on those sets of views that were previously off to the
+        // left. This change is due to how the first visible position changes when scrolling.
+        int currentPagePosition = firstVisiblePosition - relativePagingPosition;
+        int nextPagePosition = currentPagePosition + itemsPerPage;
+        int previousPagePosition = currentPagePosition - itemsPerPage;
+
+        // If flinging, always snap to the next page/set of pages in that direction. Otherwise, base
+        // the snapping behavior on the crossing of a threshold.
+        int targetPosition;
+        if (isFling) {
+            // We define positive values for "sign" as those that will increase the page position
+            float sign = -Math.signum(velocityX);
+            if (sign > 0) {
+                // Flinging toward the left, so show more items on the next page to the right
+                targetPosition = nextPagePosition;
+            } else {
+                // Flinging toward the right, so the "current" page here is actually what is
+                // currently on the left, so show that.
+                targetPosition = currentPagePosition;
+            }
+        } else {
+            // The threshold for snapping while scrolling will be based on half the current
+            // individual view size.
+            int snapThreshold = getViewWidth() / 2;
+            if (currentLeftOffset < 0) {
+                // Item is (partially) off the screen to the left. This is almost always the case.
+                // Note that when scrolling the the right, the first visible item is actually from
+                // a previous set of pages, and while scrolling to the left it is the "current" set
+                if (Math.abs(currentLeftOffset) > snapThreshold) {
+                    targetPosition = nextPagePosition;
+                } else {
+                    targetPosition = currentPagePosition;
+                }
+            } else {
+                // Item is on the screen off to the right
+                if (Math.abs(currentLeftOffset) > snapThreshold) {
+                    targetPosition = previousPagePosition;
+                } else {
+                    targetPosition = currentPagePosition;
+                }
+            }
+        }
+
+        // If the target position lies outside of the bounds of the current set of items, fix it to
+        // a valid endpoint
+        if (targetPosition < 0) {
+            targetPosition = 0;
+        } else if (targetPosition > getLastPosition()) {
+            targetPosition = getLastPosition();
+        }
+        return targetPosition;
+    }
+
+    /**
+     * @param position the position of an item
+     * @return the left edge the item should end up at when collapsing to it
+     */
+    public int getLeftEndValueForPosition(int position) {
+        int extraOffset;
+        int relativePosition = getRelativePagingPosition(position, true);
+        if (position == 0 || position == getLastPosition() || relativePosition != 0) {
+            // If the first position is 0 or if we are not collapsing back to the beginning of the
+            // page, we should check for extra padding
+            extraOffset = getExtraLeftOffsetForPosition(position, true);
+        } else {
+            // We are going to the beginning of a new page that is not the first...we don't need to
+            // take padding into account
+            extraOffset = 0;
+        }
+
+        return Math.round(extraOffset + relativePosition * mDisplayWidth * mViewWidthFractionMin);
+    }
+
+    /**
+     * @param position            the position of an item
+     * @param isForCollapsedState true if looking for the offset in the collapsed state
+     * @return the extra offset from the left edge needed to show the item in place
+     */
+    public int getExtraLeftOffsetForPosition(int position, boolean isForCollapsedState) {
+        // Special case: we need to make sure we don't translate the last item too far to the left
+        // (because we are translating with offsetChildrenHorizontal and not scrollBy). In this case
+        // we should return the amount needed to right-align this item. Also, we need to make sure
+        // the right edge of the item is not actually on the first page, otherwise we'll have
+        // problems at that end instead.
+        if (isForCollapsedState && !mAreEndPagesCentered && position == getLastPosition()
+                && getAbsoluteRightEdgeForPosition(position) > mDisplayWidth) {
+            return mDisplayWidth - getViewWidthMin();
+        }
+
+        // Just use the extra padding
+        return getExtraLeftPaddingForPosition(position, isForCollapsedState);
+    }
+
+    /**
+     * @param position            the position of an item
+     * @param isForCollapsedState true if looking for the padding in the collapsed state
+     * @return the padding shown to the left of the item, if any
+     */
+    public int getExtraLeftPaddingForPosition(int position, boolean isForCollapsedState) {
+        return isPaddingVisibleForItem(position, isForCollapsedState)
+                ? getPaddingToCenterFirstItem() : 0;
+    }
+
+    /**
+     * @return the amount of padding needed to shift the center of the first item to the center of
+     * the screen
+     */
+    public int getPaddingToCenterFirstItem() {
+        float halfViewWidth = (getViewWidthMin() / 2f);
+        float numHalfViewWidthsToCenter = (mDisplayWidth / halfViewWidth) / 2;
+        return Math.round((numHalfViewWidthsToCenter - 1) * halfViewWidth);
+    }
+
+    /**
+     * @param position            the position of an item
+     * @param isForCollapsedState true if looking for the padding in the collapsed state
+     * @return true if the padding used to center the end pages is on screen along with the item
+     */
+    public boolean isPaddingVisibleForItem(int position, boolean isForCollapsedState) {
+        if (!isForCollapsedState || !mAreEndPagesCentered) {
+            // There is no padding so this is always false
+            return false;
+        }
+
+        if (position == getLastPosition()) {
+            // Last position is always centered
+            return true;
+        }
+
+        // The padding is visible for any item on screen when the first item is centered. That
+        // includes the first item and the other views on screen with it (even if only partially).
+        int halfViewWidth = (getViewWidthMin() / 2);
+        int numHalfViewWidthsToCenter = (mDisplayWidth / halfViewWidth) / 2;
+        long numViewsToRightOfCenterItem = Math.round(Math.ceil(numHalfViewWidthsToCenter / 2f));
+        return (position <= numViewsToRightOfCenterItem);
+    }
+
+    /**
+     * Given an absolute position in the data set, return the relative position within the item's
+     * "page" for the current expanded/collapsed state.
+     *
+     * @param position the absolute position of an item
+     * @return the item's relative position in its "page" of data.
+     */
+    public int getRelativePagingPosition(int position) {
+        return getRelativePagingPosition(position, mIsCollapsed);
+    }
+
+    /**
+     * Given an absolute position in the data set, return the relative position within the item's
+     * "page" for the given expanded/collapsed state.
+     *
+     * @param position              the absolute position of an item
+     * @param findForCollapsedState true if looking for the paging position in the collapsed state
+     * @return the item's relative position in its "page" of data.
+     */
+    public int getRelativePagingPosition(int position, boolean findForCollapsedState) {
+        if (findForCollapsedState) {
+            if (position == 0) {
+                // First item is always the first item of its page
+                return 0;
+            }
+
+            // Get position within a "page". For example, if paging in groups of two, any even
+            // position will have a relative position of 0, while any odd position will have a
+            // relative position of 1 (if the paging offset is zero).
+            return (position - getFirstPagePagingOffset()) % mItemsPerPage;
+        } else {
+            // Always one item per page when in expanded mode
+            return 0;
+        }
+    }
+
+    /**
+     * @param position the position of an item
+     * @return true if the item is the first one of its "page" in the current state
+     */
+    public boolean isValidPagingPosition(int position) {
+        if (position == 0) {
+            // The first position is always valid
+            return true;
+        }
+
+        return ((position - getFirstPagePagingOffset()) % mItemsPerPageCurrent == 0);
+    }
+
+    /**
+     * Rounds down to the closest paging position.
+     *
+     * @param position the starting position to round from
+     * @return a valid target position less than or equal to the given position
+     */
+    public int getValidPagingPosition(int position) {
+        return position - getRelativePagingPosition(position);
+    }
+
+    /**
+     * Given a valid paging position, returns the number of items that should be considered to be
+     * selected as part of its "page".
+     *
+     * @param position a valid paging position, see {@link #isValidPagingPosition(int)}
+     * @return the number of items that belong to that item's "page"
+     */
+    public int getSelectableItemsPerPageForPosition(int position) {
+        if (position == 0 && mIsCollapsed && mAreEndPagesCentered) {
+            // The first page is a page of 1 item here
+            return 1;
+        } else if (position + mItemsPerPageCurrent > mItemCount) {
+            // We are at a position where the "page" isn't full, so the number of selectable items
+            // should be reduced.
+            return mItemCount - position;
+        } else {
+            // We are safe to return the full number of items;
+            return mItemsPerPageCurrent;
+        }
+    }
+
+    private int getAbsoluteRightEdgeForPosition(int position) {
+        return (position + 1) * getViewWidth();
+    }
+
+    private int getFirstPagePagingOffset() {
+        return mAreEndPagesCentered ? 1 : 0;
+    }
+
+    private int getLastPosition() {
+        return mItemCount - 1;
+    }
+}
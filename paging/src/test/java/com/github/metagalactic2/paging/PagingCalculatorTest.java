@@ -0,0 +1,92 @@
+package com.github.metagalactic2.paging;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PagingCalculatorTest {
+
+    private static final int DISPLAY_WIDTH = 1000;
+    private static final int ITEM_COUNT = 10;
+
+    private PagingCalculator mCalculator;
+
+    @Before
+    public void setUp() {
+        // Two half-width items per page in the collapsed state
+        mCalculator = new PagingCalculator();
+        mCalculator.setDisplayWidth(DISPLAY_WIDTH);
+        mCalculator.setItemCount(ITEM_COUNT);
+        mCalculator.setItemsPerPage(2);
+        mCalculator.setItemsPerPageCurrent(2);
+        mCalculator.setViewWidthFractionMin(0.5f);
+        mCalculator.setViewWidthFractionCurrent(0.5f);
+        mCalculator.setCollapsed(true);
+    }
+
+    @Test
+    public void drag_snapsOncePastHalfAnItem() {
+        assertEquals(4, mCalculator.getNewTargetPosition(2, -300, 0f, false));
+        assertEquals(2, mCalculator.getNewTargetPosition(2, -100, 0f, false));
+        assertEquals(2, mCalculator.getNewTargetPosition(3, 100, 0f, false));
+    }
+
+    @Test
+    public void fling_snapsToNextPageWithinBounds() {
+        assertEquals(4, mCalculator.getNewTargetPosition(2, -10, -500f, true));
+        assertEquals(2, mCalculator.getNewTargetPosition(3, -10, 500f, true));
+
+        int target = mCalculator.getNewTargetPosition(8, -10, -500f, true);
+        assertEquals(9, target);
+        assertFalse(mCalculator.isValidPagingPosition(target));
+        assertEquals(8, mCalculator.getValidPagingPosition(target));
+    }
+
+    @Test
+    public void centeredEndPages_offsetPagesByTheFirstItem() {
+        mCalculator.setEndPagesCentered(true);
+
+        assertEquals(250, mCalculator.getPaddingToCenterFirstItem());
+        assertEquals(1, mCalculator.getNewTargetPosition(0, -10, -500f, true));
+        assertTrue(mCalculator.isValidPagingPosition(1));
+        assertFalse(mCalculator.isValidPagingPosition(2));
+        assertEquals(1, mCalculator.getSelectableItemsPerPageForPosition(0));
+        assertEquals(1, mCalculator.getSelectableItemsPerPageForPosition(9));
+    }
+
+    @Test
+    public void centeredEndPages_paddingIsVisibleNextToTheEnds() {
+        mCalculator.setEndPagesCentered(true);
+
+        assertTrue(mCalculator.isPaddingVisibleForItem(1, true));
+        assertFalse(mCalculator.isPaddingVisibleForItem(2, true));
+        assertTrue(mCalculator.isPaddingVisibleForItem(ITEM_COUNT - 1, true));
+        assertFalse(mCalculator.isPaddingVisibleForItem(1, false));
+        assertEquals(250, mCalculator.getLeftEndValueForPosition(0));
+    }
+
+    @Test
+    public void leftEndValue_ofTheLastItem_keepsTheLegacyOffset() {
+        assertEquals(0, mCalculator.getLeftEndValueForPosition(4));
+        assertEquals(500, mCalculator.getLeftEndValueForPosition(3));
+
+        // The last item gets the offset that would right-align it on top of its offset within its
+        // page, which puts its left edge at the display width. This is how the view has always
+        // collapsed to the last item; the value is pinned here so any change to it is deliberate.
+        assertEquals(1000, mCalculator.getLeftEndValueForPosition(ITEM_COUNT - 1));
+    }
+
+    @Test
+    public void expandedState_hasOneItemPerPage() {
+        mCalculator.setCollapsed(false);
+        mCalculator.setItemsPerPageCurrent(1);
+        mCalculator.setViewWidthFractionCurrent(1f);
+
+        assertEquals(0, mCalculator.getRelativePagingPosition(3));
+        assertTrue(mCalculator.isValidPagingPosition(3));
+        assertEquals(4, mCalculator.getNewTargetPosition(3, -600, 0f, false));
+    }
+}
@@ -7,9 +7,6 @@ import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
 import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.resource.drawable.GlideDrawable;
-import com.bumptech.glide.request.RequestListener;
-import com.bumptech.glide.request.target.Target;
 import com.github.metagalactic.views.ScalableImageView;
 import com.github.metagalactic2.views.ExpandableImageView;
 import com.github.metagalactic2.views.ExpandableImageViewPagerItem;
@@ -52,6 +49,8 @@ public class ExpandableImageViewDemoActivity extends AppCompatActivity {
 
             @Override
             public void onClearImageFromYourFavoriteImageLibrary(final ScalableImageView scalableImageView) {
+                // Called whenever a view lets go of its image (e.g. when it is recycled), so this
+                // must be safe for views that have nothing loaded
                 Glide.clear(scalableImageView);
             }
 
@@ -59,43 +58,14 @@ public class ExpandableImageViewDemoActivity extends AppCompatActivity {
             public void onLoadImageFromYourFavoriteImageLibrary(final ScalableImageView imageView,
                                                                 final String imageUrl,
                                                                 @Nullable final Drawable placeholder) {
-
-                if (imageUrl.equals(imageView.getTag())) {
-                    // We already have the image, no need to load it again.
-                    return;
-                }
-
-                //If we don't clear the tag, Glide will crash as Glide do not want us to have tag on
-                //image view
-                // Clear the current tag and load the new image, The new tag will be set on success.
-                imageView.setTag(null);
-
+                // The view only asks for an image when it actually needs a new one, so there is no
+                // need to remember what was loaded. Glide keeps its request in the view's tag, so
+                // the tag must not be used for anything else.
                 Glide.with(imageView.getContext())
                         .load(imageUrl)
                         .thumbnail(GlideConfigModule.SIZE_MULTIPLIER)
                         .placeholder(placeholder)
                         .dontAnimate()
-                        .listener(new RequestListener<String, GlideDrawable>() {
-                            @Override
-                            public boolean onException(Exception e,
-                                                       String model,
-                                                       Target<GlideDrawable> target,
-                                                       boolean isFirstResource) {
-                                return false;
-                            }
-
-                            @Override
-                            public boolean onResourceReady(GlideDrawable resource,
-                                                           String model,
-                                                           Target<GlideDrawable> target,
-                                                           boolean isFromMemoryCache,
-                                                           boolean isFirstResource) {
-                                // Set the image URL as a tag so we know that the image with this URL has
-                                // successfully loaded
-                                imageView.setTag(imageUrl);
-                                return false;
-                            }
-                        })
                         .into(imageView);
             }
         });